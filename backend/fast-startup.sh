@@ -0,0 +1,85 @@
+#!/bin/bash
+# Builds the AOT-processed jar, trains an AppCDS archive and reports how long the backend
+# takes from launch to the first successful GET /api/notes/active.
+#
+#   ./fast-startup.sh            build, train and measure the fast-startup mode
+#   ./fast-startup.sh --baseline measure the plain jar (no AOT, no CDS) for comparison
+#
+# The probe logs in as STARTUP_USER / STARTUP_PASSWORD, registering the account first if it does
+# not exist. Both are required, so no account with known credentials is left in the database.
+#
+# PostgreSQL must be reachable with the configured datasource (the training run starts the
+# application context, including Flyway and Hibernate). Override it with SPRING_DATASOURCE_URL etc.
+
+set -e
+cd "$(dirname "$0")"
+
+JAR=notes-app-1.0.0.jar
+OUT=target/fast-startup
+PORT=${PORT:-8080}
+
+if [ -z "$STARTUP_USER" ] || [ -z "$STARTUP_PASSWORD" ]; then
+    echo "❌ Set STARTUP_USER and STARTUP_PASSWORD to the account the probe logs in with"
+    exit 1
+fi
+USERNAME=$STARTUP_USER
+PASSWORD=$STARTUP_PASSWORD
+
+now_ms() {
+    date +%s%3N
+}
+
+if [ "$1" == "--baseline" ]; then
+    echo "🔧 Building plain jar..."
+    mvn -q -DskipTests package
+    JAVA_CMD=(java -jar "target/$JAR")
+else
+    echo "🔧 Building AOT-processed jar..."
+    mvn -q -Pfast-startup -DskipTests package
+
+    # CDS needs the classes on a stable, exploded classpath rather than inside a nested jar
+    rm -rf "$OUT"
+    java -Djarmode=tools -jar "target/$JAR" extract --destination "$OUT"
+
+    echo "🎓 Training the CDS archive (starts and stops the context)..."
+    java -XX:ArchiveClassesAtExit="$OUT/application.jsa" \
+        -Dspring.aot.enabled=true -Dspring.profiles.active=fast-startup \
+        -Dspring.context.exit=onRefresh \
+        -jar "$OUT/$JAR" > "$OUT/training.log" 2>&1
+
+    JAVA_CMD=(java -XX:SharedArchiveFile="$OUT/application.jsa"
+        -Dspring.aot.enabled=true -Dspring.profiles.active=fast-startup
+        -jar "$OUT/$JAR")
+fi
+
+echo "🚀 Starting backend..."
+mkdir -p logs
+START=$(now_ms)
+"${JAVA_CMD[@]}" --server.port="$PORT" > logs/fast-startup.log 2>&1 &
+BACKEND_PID=$!
+trap 'kill $BACKEND_PID 2> /dev/null' EXIT
+
+BODY="{\"username\":\"$USERNAME\",\"password\":\"$PASSWORD\"}"
+TOKEN=""
+while true; do
+    if ! kill -0 $BACKEND_PID 2> /dev/null; then
+        echo "❌ Backend exited, see logs/fast-startup.log"
+        exit 1
+    fi
+    if [ -z "$TOKEN" ]; then
+        curl -s -o /dev/null -H "Content-Type: application/json" -d "$BODY" \
+            "http://localhost:$PORT/api/auth/register" || true
+        TOKEN=$(curl -s -H "Content-Type: application/json" -d "$BODY" \
+            "http://localhost:$PORT/api/auth/login" | sed -n 's/.*"token":"\([^"]*\)".*/\1/p')
+    fi
+    if [ -n "$TOKEN" ]; then
+        STATUS=$(curl -s -o /dev/null -w '%{http_code}' -H "Authorization: Bearer $TOKEN" \
+            "http://localhost:$PORT/api/notes/active")
+        if [ "$STATUS" == "200" ]; then
+            break
+        fi
+    fi
+    sleep 0.05
+done
+
+echo "✅ First successful /api/notes/active after $(( $(now_ms) - START )) ms"
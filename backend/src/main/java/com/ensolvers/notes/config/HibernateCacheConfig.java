@@ -0,0 +1,80 @@
+package com.ensolvers.notes.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Local (per JVM) Caffeine regions for the Hibernate second-level cache. Entity and
+ * collection regions are bounded and expire after a while as a safety net for writes
+ * made outside Hibernate; the update-timestamps region must never evict, or cached
+ * query results could outlive the table changes that invalidate them.
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    public static final String USERS_REGION = "users";
+    public static final String TAGS_REGION = "tags";
+    public static final String NOTE_TAGS_REGION = "note-tags";
+    public static final String USER_QUERIES_REGION = "user-queries";
+    public static final String TAG_QUERIES_REGION = "tag-queries";
+
+    private static final String QUERY_RESULTS_REGION = "default-query-results-region";
+    private static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    @Value("${notes.cache.entity-max-size:10000}")
+    private long entityMaxSize;
+
+    @Value("${notes.cache.entity-ttl:1h}")
+    private Duration entityTtl;
+
+    @Value("${notes.cache.query-max-size:10000}")
+    private long queryMaxSize;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager() {
+        // A manager of its own rather than the provider's default, so that several application
+        // contexts in one JVM (e.g. test contexts) never share regions
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(
+                URI.create("notes-hibernate:" + UUID.randomUUID()), provider.getDefaultClassLoader());
+
+        for (String region : new String[]{USERS_REGION, TAGS_REGION, NOTE_TAGS_REGION}) {
+            cacheManager.createCache(region, region(entityMaxSize, entityTtl));
+        }
+        for (String region : new String[]{USER_QUERIES_REGION, TAG_QUERIES_REGION, QUERY_RESULTS_REGION}) {
+            cacheManager.createCache(region, region(queryMaxSize, entityTtl));
+        }
+        cacheManager.createCache(UPDATE_TIMESTAMPS_REGION, region(-1, null));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maxSize, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setStatisticsEnabled(true);
+        if (maxSize > 0) {
+            configuration.setMaximumSize(OptionalLong.of(maxSize));
+        }
+        if (ttl != null) {
+            configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        }
+        return configuration;
+    }
+}
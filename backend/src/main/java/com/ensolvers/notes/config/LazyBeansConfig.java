@@ -0,0 +1,46 @@
+package com.ensolvers.notes.config;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+/**
+ * Makes the beans of the packages listed in notes.startup.lazy-packages lazy, e.g. springdoc,
+ * which is only needed when someone opens the API docs. Unlike spring.main.lazy-initialization
+ * this leaves the beans on the request path (security, JPA, MVC) eager, so the first request
+ * does not pay for them.
+ */
+@Configuration
+public class LazyBeansConfig {
+
+    @Bean
+    public static BeanFactoryPostProcessor lazyPackagesPostProcessor(Environment environment) {
+        List<String> packages = Binder.get(environment)
+                .bind("notes.startup.lazy-packages", Bindable.listOf(String.class))
+                .orElse(List.of());
+
+        return beanFactory -> {
+            if (packages.isEmpty()) {
+                return;
+            }
+            for (String name : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                // @Bean methods have no class of their own; use the configuration class declaring them
+                String className = definition.getBeanClassName();
+                if (className == null && definition.getFactoryBeanName() != null
+                        && beanFactory.containsBeanDefinition(definition.getFactoryBeanName())) {
+                    className = beanFactory.getBeanDefinition(definition.getFactoryBeanName()).getBeanClassName();
+                }
+                if (className != null && packages.stream().anyMatch(className::startsWith)) {
+                    definition.setLazyInit(true);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,18 @@
+package com.ensolvers.notes.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Single shared password encoder. Kept out of SecurityConfig so that services used by
+ * the security filters can depend on it without a circular reference.
+ */
+@Configuration
+public class PasswordConfig {
+
+    @Bean
+    public BCryptPasswordEncoder passwordEncoder() {
+        return new BCryptPasswordEncoder();
+    }
+}
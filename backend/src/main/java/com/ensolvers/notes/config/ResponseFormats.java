@@ -0,0 +1,68 @@
+package com.ensolvers.notes.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationStrategy;
+import org.springframework.web.accept.HeaderContentNegotiationStrategy;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The formats note responses can be written in and their mappers, for responses that are
+ * encoded by hand (cached lists, streams) instead of through the message converters.
+ */
+@Component
+public class ResponseFormats {
+
+    // The type MappingJackson2SmileHttpMessageConverter reads and writes
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    // In order of preference when the client accepts several; JSON is also the fallback
+    private final Map<MediaType, ObjectMapper> mappers = new LinkedHashMap<>();
+    private final ContentNegotiationStrategy negotiation = new HeaderContentNegotiationStrategy();
+
+    @Autowired
+    public ResponseFormats(ObjectMapper objectMapper, MappingJackson2CborHttpMessageConverter cborConverter,
+                           MappingJackson2SmileHttpMessageConverter smileConverter) {
+        mappers.put(MediaType.APPLICATION_JSON, objectMapper);
+        mappers.put(MediaType.APPLICATION_CBOR, cborConverter.getObjectMapper());
+        mappers.put(APPLICATION_SMILE, smileConverter.getObjectMapper());
+    }
+
+    public Set<MediaType> all() {
+        return mappers.keySet();
+    }
+
+    public ObjectMapper mapper(MediaType format) {
+        return mappers.get(format);
+    }
+
+    /**
+     * The first format the Accept header asks for, or JSON.
+     */
+    public MediaType negotiate(HttpServletRequest request) {
+        try {
+            List<MediaType> accepted = negotiation.resolveMediaTypes(new ServletWebRequest(request));
+            for (MediaType type : accepted) {
+                for (MediaType format : mappers.keySet()) {
+                    if (type.isCompatibleWith(format)) {
+                        return format;
+                    }
+                }
+            }
+        } catch (HttpMediaTypeNotAcceptableException e) {
+            // An Accept header that cannot be parsed gets JSON, like no Accept header at all
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+}
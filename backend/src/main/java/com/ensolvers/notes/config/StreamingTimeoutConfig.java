@@ -0,0 +1,52 @@
+package com.ensolvers.notes.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Streamed note lists and the export run as long as reading the user's notes takes, so they
+ * get their own async timeout (notes.stream.response-timeout, none when not positive) instead
+ * of spring.mvc.async.request-timeout. Past that one the body would just end mid-stream,
+ * after the 200 went out.
+ */
+@Configuration
+public class StreamingTimeoutConfig implements WebMvcConfigurer {
+
+    private static final String LONG_STREAM = StreamingTimeoutConfig.class.getName() + ".LONG_STREAM";
+
+    @Value("${notes.stream.response-timeout:-1}")
+    private Duration responseTimeout;
+
+    /**
+     * Marks the request, whose handler returns a StreamingResponseBody, for the streaming timeout.
+     */
+    public static void longStream(HttpServletRequest request) {
+        request.setAttribute(LONG_STREAM, Boolean.TRUE);
+    }
+
+    @Override
+    public void configureAsyncSupport(@NonNull AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            // Runs before the async request starts, when its timeout can still be changed
+            @Override
+            public <T> void beforeConcurrentHandling(@NonNull NativeWebRequest request, @NonNull Callable<T> task) {
+                if (request instanceof AsyncWebRequest asyncRequest
+                        && request.getAttribute(LONG_STREAM, RequestAttributes.SCOPE_REQUEST) != null) {
+                    asyncRequest.setTimeout(responseTimeout.isNegative() || responseTimeout.isZero()
+                            ? -1L : responseTimeout.toMillis());
+                }
+            }
+        });
+    }
+}
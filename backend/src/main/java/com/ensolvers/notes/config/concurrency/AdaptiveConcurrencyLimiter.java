@@ -0,0 +1,116 @@
+package com.ensolvers.notes.config.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gradient-based adaptive concurrency limit. It compares a short-term latency average
+ * with a long-term one: when requests get slower than usual (e.g. Postgres is struggling)
+ * the limit shrinks proportionally, and while latency is normal and the limit is actually
+ * used it grows by roughly its square root. Requests over the limit are rejected at once
+ * instead of queueing for a connection.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Priority {
+        // Writes and authentication: may use the whole limit
+        HIGH,
+        // List and other reads: may use only readShare of it
+        LOW
+    }
+
+    private static final double SHORT_RTT_ALPHA = 2.0 / (10 + 1);
+    private static final double LONG_RTT_ALPHA = 2.0 / (600 + 1);
+    private static final double SMOOTHING = 0.2;
+
+    private final ConcurrencyLimitProperties properties;
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    // Updated under the monitor; read without it on the acquire path
+    private volatile double limit;
+    private double shortRttNanos;
+    private double longRttNanos;
+
+    private final Counter rejectedHigh;
+    private final Counter rejectedLow;
+
+    @Autowired
+    public AdaptiveConcurrencyLimiter(ConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.limit = properties.getInitialLimit();
+
+        Gauge.builder("http.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder("http.concurrency.inflight", inflight, AtomicInteger::get)
+                .register(meterRegistry);
+        this.rejectedHigh = Counter.builder("http.concurrency.rejected").tag("priority", "high")
+                .register(meterRegistry);
+        this.rejectedLow = Counter.builder("http.concurrency.rejected").tag("priority", "low")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reserves a slot for a request.
+     *
+     * @return the number of requests in flight before this one, or -1 if the request must be rejected
+     */
+    public int tryAcquire(Priority priority) {
+        double allowed = priority == Priority.HIGH ? limit : limit * properties.getReadShare();
+        while (true) {
+            int current = inflight.get();
+            if (current >= allowed) {
+                (priority == Priority.HIGH ? rejectedHigh : rejectedLow).increment();
+                return -1;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Frees the slot and, if a latency sample is given, feeds it to the limit algorithm.
+     */
+    public void release(int inflightAtStart, long rttNanos) {
+        inflight.decrementAndGet();
+        if (rttNanos > 0) {
+            onSample(inflightAtStart, rttNanos);
+        }
+    }
+
+    public double getLimit() {
+        return limit;
+    }
+
+    private synchronized void onSample(int inflightAtStart, long rttNanos) {
+        if (longRttNanos == 0) {
+            shortRttNanos = rttNanos;
+            longRttNanos = rttNanos;
+            return;
+        }
+        shortRttNanos += SHORT_RTT_ALPHA * (rttNanos - shortRttNanos);
+        longRttNanos += LONG_RTT_ALPHA * (rttNanos - longRttNanos);
+
+        // After a long slowdown, let the baseline come back down faster
+        if (longRttNanos / shortRttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+
+        // Do not grow a limit the traffic is not even using
+        if (inflightAtStart < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, properties.getRttTolerance() * longRttNanos / shortRttNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), newLimit));
+    }
+}
@@ -0,0 +1,83 @@
+package com.ensolvers.notes.config.concurrency;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Sheds load with 503 once the adaptive concurrency limit is reached, rejecting
+ * list reads before writes and authentication. Created by SecurityConfig, not a bean,
+ * so it only runs inside the security chain.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final ConcurrencyLimitProperties properties;
+    private final List<PathPattern> excludedPatterns;
+
+    public ConcurrencyLimitFilter(AdaptiveConcurrencyLimiter limiter, ConcurrencyLimitProperties properties) {
+        this.limiter = limiter;
+        this.properties = properties;
+        this.excludedPatterns = properties.getExcludedPaths().stream()
+                .map(PathPatternParser.defaultInstance::parse)
+                .toList();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !properties.isEnabled()
+                || HttpMethod.OPTIONS.matches(request.getMethod())
+                || properties.getPaths().stream().noneMatch(path::startsWith)
+                || isExcluded(path)
+                || "true".equals(request.getParameter("stream"));
+    }
+
+    private boolean isExcluded(String path) {
+        PathContainer container = PathContainer.parsePath(path);
+        return excludedPatterns.stream().anyMatch(pattern -> pattern.matches(container));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        int inflightAtStart = limiter.tryAcquire(priorityOf(request));
+        if (inflightAtStart < 0) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Server is busy, please retry\"}");
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            // Only complete, successful requests say something useful about latency
+            boolean sample = !failed && !request.isAsyncStarted() && response.getStatus() < 500;
+            limiter.release(inflightAtStart, sample ? System.nanoTime() - start : 0);
+        }
+    }
+
+    private AdaptiveConcurrencyLimiter.Priority priorityOf(HttpServletRequest request) {
+        boolean read = HttpMethod.GET.matches(request.getMethod());
+        boolean auth = request.getRequestURI().startsWith("/api/auth");
+        return read && !auth ? AdaptiveConcurrencyLimiter.Priority.LOW : AdaptiveConcurrencyLimiter.Priority.HIGH;
+    }
+}
@@ -0,0 +1,37 @@
+package com.ensolvers.notes.config.concurrency;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings of the adaptive concurrency limiter (notes.concurrency.*).
+ */
+@Component
+@ConfigurationProperties(prefix = "notes.concurrency")
+@Getter @Setter
+public class ConcurrencyLimitProperties {
+
+    private boolean enabled = true;
+
+    private int initialLimit = 50;
+    private int minLimit = 10;
+    private int maxLimit = 500;
+
+    // Share of the limit list reads may use; the rest is kept for writes and auth
+    private double readShare = 0.75;
+
+    // How much slower than the long-term latency a request may be before the limit shrinks
+    private double rttTolerance = 1.5;
+
+    // Path prefixes guarded by the limiter
+    private List<String> paths = new ArrayList<>(List.of("/api/notes", "/api/tags", "/api/auth"));
+
+    // Path patterns of long-lived requests (streams, exports, imports, attachment transfers), not limited
+    private List<String> excludedPaths = new ArrayList<>(List.of("/api/notes/stream", "/api/notes/export",
+            "/api/notes/import", "/api/notes/*/attachments/**"));
+}
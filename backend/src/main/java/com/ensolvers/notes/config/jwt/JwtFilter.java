@@ -15,6 +15,9 @@ import java.io.IOException;
 @Component
 public class JwtFilter extends GenericFilter {
 
+    // EventSource cannot send headers, so the note stream also accepts the token as a query parameter
+    private static final String STREAM_PATH = "/api/notes/stream";
+
     @Autowired
     private JwtUtil jwtUtil;
 
@@ -27,9 +30,14 @@ public class JwtFilter extends GenericFilter {
 
         HttpServletRequest httpReq = (HttpServletRequest) request;
         String authHeader = httpReq.getHeader("Authorization");
-
+        String token = null;
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            String token = authHeader.substring(7);
+            token = authHeader.substring(7);
+        } else if (STREAM_PATH.equals(httpReq.getRequestURI())) {
+            token = httpReq.getParameter("access_token");
+        }
+
+        if (token != null) {
             String username = jwtUtil.extractUsername(token);
 
             if (username != null && jwtUtil.validateToken(token)) {
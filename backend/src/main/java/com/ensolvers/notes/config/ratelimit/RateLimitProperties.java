@@ -0,0 +1,40 @@
+package com.ensolvers.notes.config.ratelimit;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-route rate limits (notes.ratelimit.*). The first route whose pattern matches wins.
+ */
+@Component
+@ConfigurationProperties(prefix = "notes.ratelimit")
+@Getter @Setter
+public class RateLimitProperties {
+
+    public enum KeyType {
+        // Authenticated username, falling back to the client IP for anonymous requests
+        USER,
+        IP
+    }
+
+    private boolean enabled = true;
+
+    // Buckets unused for this long after refilling are evicted
+    private Duration idleEviction = Duration.ofMinutes(10);
+
+    private List<Route> routes = new ArrayList<>();
+
+    @Getter @Setter
+    public static class Route {
+        private String pattern;
+        private KeyType key = KeyType.USER;
+        private double permitsPerSecond;
+        private int burst;
+    }
+}
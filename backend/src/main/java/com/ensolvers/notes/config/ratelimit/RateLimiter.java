@@ -0,0 +1,93 @@
+package com.ensolvers.notes.config.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds one token bucket per (route, client key). Lookups go through a ConcurrentHashMap,
+ * whose striped bins keep contention low; the buckets themselves never lock.
+ */
+@Component
+public class RateLimiter {
+
+    /**
+     * Outcome of a permit request; waitNanos is 0 when allowed.
+     */
+    public record Decision(RateLimitProperties.Route route, long waitNanos) {
+        public boolean allowed() {
+            return waitNanos == 0;
+        }
+    }
+
+    private static final Decision UNLIMITED = new Decision(null, 0);
+
+    private final RateLimitProperties properties;
+    private final Map<RateLimitProperties.Route, Map<String, TokenBucket>> buckets = new ConcurrentHashMap<>();
+    private final Map<RateLimitProperties.Route, PathPattern> patterns = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejectedByRoute = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("http.ratelimit.buckets", buckets,
+                        b -> b.values().stream().mapToInt(Map::size).sum())
+                .description("Live rate limit buckets")
+                .register(meterRegistry);
+    }
+
+    public RateLimitProperties.Route findRoute(String path) {
+        List<RateLimitProperties.Route> routes = properties.getRoutes();
+        PathContainer container = PathContainer.parsePath(path);
+        for (RateLimitProperties.Route route : routes) {
+            PathPattern pattern = patterns.computeIfAbsent(route,
+                    r -> PathPatternParser.defaultInstance.parse(r.getPattern()));
+            if (pattern.matches(container)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    public Decision tryAcquire(RateLimitProperties.Route route, String clientKey) {
+        if (!properties.isEnabled() || route == null) {
+            return UNLIMITED;
+        }
+        long now = System.nanoTime();
+        Map<String, TokenBucket> routeBuckets = buckets.computeIfAbsent(route, r -> new ConcurrentHashMap<>());
+        TokenBucket bucket = routeBuckets.get(clientKey);
+        if (bucket == null) {
+            bucket = routeBuckets.computeIfAbsent(clientKey,
+                    k -> new TokenBucket(route.getPermitsPerSecond(), route.getBurst(), now));
+        }
+
+        long waitNanos = bucket.tryAcquire(now);
+        if (waitNanos > 0) {
+            rejectedByRoute.computeIfAbsent(route.getPattern(), pattern -> Counter.builder("http.ratelimit.rejected")
+                    .tag("route", pattern)
+                    .description("Requests rejected by the rate limiter")
+                    .register(meterRegistry)).increment();
+        }
+        return new Decision(route, waitNanos);
+    }
+
+    @Scheduled(fixedDelayString = "${notes.ratelimit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        long idleNanos = properties.getIdleEviction().toNanos();
+        buckets.values().forEach(routeBuckets ->
+                routeBuckets.values().removeIf(bucket -> bucket.isIdleSince(now, idleNanos)));
+    }
+}
@@ -0,0 +1,218 @@
+package com.ensolvers.notes.controller;
+
+import com.ensolvers.notes.config.jwt.JwtUtil;
+import com.ensolvers.notes.exception.AttachmentTooLargeException;
+import com.ensolvers.notes.model.Attachment;
+import com.ensolvers.notes.model.User;
+import com.ensolvers.notes.service.AttachmentService;
+import com.ensolvers.notes.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Handles note attachment REST endpoints. Uploads are the raw request body; downloads
+ * support ETag revalidation and single byte ranges.
+ */
+@RestController
+@RequestMapping("/api/notes/{noteId}/attachments")
+public class AttachmentController {
+
+    // Request attributes of Tomcat's sendfile support: the connector writes the file to the
+    // socket itself (zero-copy) after the handler returns, as DefaultServlet does for static files
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final AttachmentService attachmentService;
+    private final UserService userService;
+    private final JwtUtil jwtUtil;
+
+    @Autowired
+    public AttachmentController(AttachmentService attachmentService, UserService userService, JwtUtil jwtUtil) {
+        this.attachmentService = attachmentService;
+        this.userService = userService;
+        this.jwtUtil = jwtUtil;
+    }
+
+    private User getAuthenticatedUser(String token) {
+        String username = jwtUtil.extractUsername(token);
+        Optional<User> user = userService.findByUsername(username);
+        if (user.isEmpty()) {
+            throw new RuntimeException("User not found");
+        }
+        return user.get();
+    }
+
+    /**
+     * Uploads the request body as a new attachment; Content-Type is kept as the file's type.
+     * The body is streamed to disk, so it is not sent as multipart/form-data.
+     */
+    @PostMapping
+    public ResponseEntity<?> uploadAttachment(@RequestHeader("Authorization") String token,
+                                              @PathVariable Long noteId,
+                                              @RequestParam("name") String name,
+                                              HttpServletRequest request) {
+        try {
+            String actualToken = token.replace("Bearer ", "");
+            User user = getAuthenticatedUser(actualToken);
+            Attachment attachment = attachmentService.store(noteId, user, name, request.getContentType(),
+                    request.getInputStream());
+            return ResponseEntity.status(HttpStatus.CREATED).body(attachment);
+        } catch (AttachmentTooLargeException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(error);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getAttachments(@RequestHeader("Authorization") String token,
+                                            @PathVariable Long noteId) {
+        try {
+            String actualToken = token.replace("Bearer ", "");
+            User user = getAuthenticatedUser(actualToken);
+            return ResponseEntity.ok(attachmentService.getAttachments(noteId, user));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * Downloads an attachment, or the byte range asked for with Range. The content never
+     * changes, so its SHA-256 is a strong ETag and clients may cache it for good.
+     */
+    @GetMapping("/{attachmentId}")
+    public ResponseEntity<StreamingResponseBody> downloadAttachment(@RequestHeader("Authorization") String token,
+                                                                    @PathVariable Long noteId,
+                                                                    @PathVariable Long attachmentId,
+                                                                    @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                                                                    @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+                                                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                                    HttpServletRequest request) {
+        String actualToken = token.replace("Bearer ", "");
+        User user = getAuthenticatedUser(actualToken);
+        Attachment attachment = attachmentService.getAttachment(noteId, attachmentId, user);
+        Path file = attachmentService.fileOf(attachment);
+        long size = attachment.getSize();
+        String etag = "\"" + attachment.getSha256() + "\"";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setCacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (ifNoneMatch != null && matchesETag(ifNoneMatch, etag)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+
+        long start = 0;
+        long end = size - 1;
+        HttpStatus status = HttpStatus.OK;
+        // A Range that cannot be parsed, or asks for several ranges, is answered with the whole file
+        List<HttpRange> ranges = range != null && (ifRange == null || ifRange.trim().equals(etag))
+                ? parseRanges(range) : List.of();
+        if (ranges.size() == 1) {
+            start = ranges.get(0).getRangeStart(size);
+            end = ranges.get(0).getRangeEnd(size);
+            if (start >= size || end < start) {
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return new ResponseEntity<>(headers, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            }
+            status = HttpStatus.PARTIAL_CONTENT;
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+
+        long length = end - start + 1;
+        headers.setContentType(MediaType.parseMediaType(attachment.getContentType()));
+        headers.setContentLength(length);
+        headers.setContentDisposition(ContentDisposition.builder(isInline(attachment) ? "inline" : "attachment")
+                .filename(attachment.getFileName(), StandardCharsets.UTF_8)
+                .build());
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))
+                && HttpMethod.GET.matches(request.getMethod()) && length > 0) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return new ResponseEntity<>(headers, status);
+        }
+
+        long position = start;
+        StreamingResponseBody body = out -> transfer(file, position, length, out);
+        return new ResponseEntity<>(body, headers, status);
+    }
+
+    @DeleteMapping("/{attachmentId}")
+    public ResponseEntity<?> deleteAttachment(@RequestHeader("Authorization") String token,
+                                              @PathVariable Long noteId,
+                                              @PathVariable Long attachmentId) {
+        try {
+            String actualToken = token.replace("Bearer ", "");
+            User user = getAuthenticatedUser(actualToken);
+            attachmentService.deleteAttachment(noteId, attachmentId, user);
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Attachment deleted successfully");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Without sendfile: FileChannel.transferTo, which copies through a small pooled buffer, never the whole file
+    private static void transfer(Path file, long position, long length, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long sent = 0;
+            while (sent < length) {
+                long written = channel.transferTo(position + sent, length - sent, target);
+                if (written <= 0) {
+                    throw new IOException("Attachment file is shorter than expected: " + file.getFileName());
+                }
+                sent += written;
+            }
+        }
+    }
+
+    private static List<HttpRange> parseRanges(String range) {
+        try {
+            return HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    private static boolean matchesETag(String ifNoneMatch, String etag) {
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .anyMatch(candidate -> candidate.equals("*") || candidate.equals(etag) || candidate.equals("W/" + etag));
+    }
+
+    // Images (except SVG, which can carry scripts) and PDFs open in the browser; anything else is downloaded
+    private static boolean isInline(Attachment attachment) {
+        String type = attachment.getContentType();
+        return (type.startsWith("image/") && !type.startsWith("image/svg")) || type.startsWith("application/pdf");
+    }
+}
@@ -4,11 +4,11 @@ import com.ensolvers.notes.config.jwt.JwtUtil;
 import com.ensolvers.notes.dto.AuthRequest;
 import com.ensolvers.notes.dto.AuthResponse;
 import com.ensolvers.notes.model.User;
+import com.ensolvers.notes.service.PasswordHashingService;
 import com.ensolvers.notes.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 /**
@@ -20,13 +20,13 @@ public class AuthController {
 
     private final UserService userService;
     private final JwtUtil jwtUtil;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
 
     @Autowired
-    public AuthController(UserService userService, JwtUtil jwtUtil, BCryptPasswordEncoder passwordEncoder) {
+    public AuthController(UserService userService, JwtUtil jwtUtil, PasswordHashingService passwordHashingService) {
         this.userService = userService;
         this.jwtUtil = jwtUtil;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
     }
 
     @PostMapping("/register")
@@ -41,7 +41,7 @@ public class AuthController {
     @PostMapping("/login")
     public ResponseEntity<AuthResponse> login(@Valid @RequestBody AuthRequest request) {
         return userService.findByUsername(request.getUsername())
-                .filter(u -> passwordEncoder.matches(request.getPassword(), u.getPassword()))
+                .filter(u -> passwordHashingService.matches(request.getPassword(), u.getPassword()))
                 .map(u -> ResponseEntity.ok(
                         new AuthResponse(jwtUtil.generateToken(u.getUsername()), "Login successful")
                 ))
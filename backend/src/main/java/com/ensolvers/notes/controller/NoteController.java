@@ -1,15 +1,51 @@
 package com.ensolvers.notes.controller;
 
+import com.ensolvers.notes.config.ResponseFormats;
+import com.ensolvers.notes.config.StreamingTimeoutConfig;
 import com.ensolvers.notes.config.jwt.JwtUtil;
+import com.ensolvers.notes.dto.ContentEditRequest;
+import com.ensolvers.notes.dto.NoteExportRecord;
+import com.ensolvers.notes.dto.NoteFields;
+import com.ensolvers.notes.dto.NoteImportResult;
+import com.ensolvers.notes.dto.NoteListRequest;
+import com.ensolvers.notes.exception.ContentHashMismatchException;
+import com.ensolvers.notes.exception.IdempotencyKeyInUseException;
+import com.ensolvers.notes.exception.IdempotencyKeyMismatchException;
+import com.ensolvers.notes.exception.NoteVersionConflictException;
 import com.ensolvers.notes.model.Note;
 import com.ensolvers.notes.model.User;
+import com.ensolvers.notes.service.IdempotencyStore;
+import com.ensolvers.notes.service.NoteEventBus;
+import com.ensolvers.notes.service.NoteImportService;
 import com.ensolvers.notes.service.NoteService;
 import com.ensolvers.notes.service.UserService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Handles note-related REST endpoints.
@@ -18,15 +54,30 @@ import java.util.*;
 @RequestMapping("/api/notes")
 public class NoteController {
 
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
     private final NoteService noteService;
     private final UserService userService;
+    private final NoteEventBus noteEventBus;
+    private final NoteImportService noteImportService;
     private final JwtUtil jwtUtil;
+    private final ObjectMapper objectMapper;
+    private final ResponseFormats responseFormats;
+    private final IdempotencyStore idempotencyStore;
 
     @Autowired
-    public NoteController(NoteService noteService, UserService userService, JwtUtil jwtUtil) {
+    public NoteController(NoteService noteService, UserService userService, NoteEventBus noteEventBus,
+                          NoteImportService noteImportService, JwtUtil jwtUtil, ObjectMapper objectMapper,
+                          ResponseFormats responseFormats, IdempotencyStore idempotencyStore) {
         this.noteService = noteService;
         this.userService = userService;
+        this.noteEventBus = noteEventBus;
+        this.noteImportService = noteImportService;
         this.jwtUtil = jwtUtil;
+        this.objectMapper = objectMapper;
+        this.responseFormats = responseFormats;
+        this.idempotencyStore = idempotencyStore;
     }
 
     private User getAuthenticatedUser(String token) {
@@ -38,13 +89,141 @@ public class NoteController {
         return user.get();
     }
 
+    // Accepts "3", "\"3\"" or W/"3"; a missing header or "*" means "any version"
+    private Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String value = ifMatch.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        return Long.valueOf(value.replace("\"", ""));
+    }
+
+    // If-Match mismatch is a failed precondition; a concurrent write caught at flush time is a conflict
+    private ResponseEntity<Map<String, String>> versionConflict(RuntimeException e) {
+        HttpStatus status = e instanceof NoteVersionConflictException
+                ? HttpStatus.PRECONDITION_FAILED
+                : HttpStatus.CONFLICT;
+        Map<String, String> error = new HashMap<>();
+        error.put("error", status == HttpStatus.CONFLICT ? "Note was modified concurrently" : e.getMessage());
+        return ResponseEntity.status(status).body(error);
+    }
+
+    /**
+     * Runs a write at most once per Idempotency-Key (see IdempotencyStore); a retry gets the
+     * first response back, marked Idempotent-Replayed: true. Without a key the write just runs.
+     */
+    private ResponseEntity<?> idempotent(User user, String idempotencyKey, String request, InputStream body,
+                                         IdempotencyStore.Write<ResponseEntity<?>> write) throws Exception {
+        if (idempotencyKey == null) {
+            return write.run(body);
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > 255) {
+            throw new RuntimeException("Idempotency-Key must be 1 to 255 characters");
+        }
+        IdempotencyStore.Result result = idempotencyStore.execute(user.getId(), idempotencyKey, request, body, in -> {
+            ResponseEntity<?> response = write.run(in);
+            return new IdempotencyStore.Result(response.getStatusCode().value(), response.getBody(), false);
+        });
+        return ResponseEntity.status(result.status())
+                .header(IDEMPOTENT_REPLAYED, String.valueOf(result.replayed()))
+                .body(result.body());
+    }
+
+    // The first request is still running elsewhere (retry shortly), or the key was used for another request
+    private ResponseEntity<Map<String, String>> idempotencyConflict(RuntimeException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        if (e instanceof IdempotencyKeyInUseException) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).header(HttpHeaders.RETRY_AFTER, "1").body(error);
+        }
+        return ResponseEntity.unprocessableEntity().body(error);
+    }
+
+    /**
+     * Writes the notes as an array (JSON, CBOR or Smile, per Accept) while they are read from
+     * the database cursor, so neither the list nor the response body is ever held in memory as a whole.
+     */
+    private ResponseEntity<StreamingResponseBody> streamNotes(User user, boolean archived, String fields,
+                                                              HttpServletRequest request) {
+        // Parsed up front so an unknown field is a 400 rather than a broken stream
+        NoteFields selected = fields != null ? NoteFields.parse(fields) : null;
+        StreamingTimeoutConfig.longStream(request);
+        MediaType format = responseFormats.negotiate(request);
+        ObjectMapper mapper = responseFormats.mapper(format);
+        // Let the generator's buffer decide when to flush instead of flushing after every note
+        ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                Consumer<Object> write = note -> {
+                    try {
+                        writer.writeValue(generator, note);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                };
+                if (selected != null) {
+                    noteService.forEachNoteView(user, archived, selected, write::accept);
+                } else {
+                    noteService.forEachNote(user, archived, write::accept);
+                }
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(format).body(body);
+    }
+
+    // One page as a plain JSON array; when there is more, Link points at the next page
+    private ResponseEntity<?> notePage(Slice<?> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.hasNext()) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("page", page.getNumber() + 1)
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(page.getContent());
+    }
+
+    private ResponseEntity<?> listNotes(User user, boolean archived, NoteListRequest listRequest, String fields,
+                                        HttpServletRequest request) {
+        if (fields != null) {
+            NoteFields selected = NoteFields.parse(fields);
+            return listRequest.isPaged()
+                    ? notePage(noteService.findNoteViews(user, archived, listRequest, selected))
+                    : ResponseEntity.ok(noteService.getNoteViews(user, archived, selected));
+        }
+        if (listRequest.isPaged()) {
+            return notePage(noteService.findNotes(user, archived, listRequest));
+        }
+        // Cached already encoded, so the format is negotiated here rather than by the converters
+        MediaType format = responseFormats.negotiate(request);
+        byte[] notes = noteService.getNoteList(user, archived, format);
+        return ResponseEntity.ok().contentType(format).body(notes);
+    }
+
+    // A note reduced to the requested fields, or the whole note without fields=
+    private Object render(Note note, String fields) {
+        return fields != null ? NoteFields.parse(fields).toMap(note) : note;
+    }
+
+    /**
+     * Without parameters, every active note (from the list cache). With any of sort, createdFrom,
+     * createdTo, page or size, one page of them; see NoteListRequest. fields= (e.g. id,title)
+     * limits the columns read and the properties returned; it applies to every note endpoint.
+     */
     @GetMapping("/active")
-    public ResponseEntity<?> getActiveNotes(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<?> getActiveNotes(@RequestHeader("Authorization") String token,
+                                            @Valid @ModelAttribute NoteListRequest listRequest,
+                                            @RequestParam(required = false) String fields,
+                                            HttpServletRequest request) {
         try {
             String actualToken = token.replace("Bearer ", "");
             User user = getAuthenticatedUser(actualToken);
-            List<Note> notes = noteService.getActiveNotes(user);
-            return ResponseEntity.ok(notes);
+            return listNotes(user, false, listRequest, fields, request);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", e.getMessage());
@@ -52,13 +231,24 @@ public class NoteController {
         }
     }
 
+    @GetMapping(value = "/active", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamActiveNotes(@RequestHeader("Authorization") String token,
+                                                                   @RequestParam(required = false) String fields,
+                                                                   HttpServletRequest request) {
+        String actualToken = token.replace("Bearer ", "");
+        return streamNotes(getAuthenticatedUser(actualToken), false, fields, request);
+    }
+
+    // Same parameters as /active
     @GetMapping("/archived")
-    public ResponseEntity<?> getArchivedNotes(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<?> getArchivedNotes(@RequestHeader("Authorization") String token,
+                                              @Valid @ModelAttribute NoteListRequest listRequest,
+                                              @RequestParam(required = false) String fields,
+                                              HttpServletRequest request) {
         try {
             String actualToken = token.replace("Bearer ", "");
             User user = getAuthenticatedUser(actualToken);
-            List<Note> notes = noteService.getArchivedNotes(user);
-            return ResponseEntity.ok(notes);
+            return listNotes(user, true, listRequest, fields, request);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", e.getMessage());
@@ -66,19 +256,159 @@ public class NoteController {
         }
     }
 
+    @GetMapping(value = "/archived", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamArchivedNotes(@RequestHeader("Authorization") String token,
+                                                                     @RequestParam(required = false) String fields,
+                                                                     HttpServletRequest request) {
+        String actualToken = token.replace("Bearer ", "");
+        return streamNotes(getAuthenticatedUser(actualToken), true, fields, request);
+    }
+
+    /**
+     * Exports every note of the user as newline-delimited JSON, one NoteExportRecord per line,
+     * streamed from a forward-only cursor. With gzip=true the body is a .ndjson.gz download;
+     * otherwise the usual Accept-Encoding based response compression applies.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportNotes(@RequestHeader("Authorization") String token,
+                                                             @RequestParam(defaultValue = "false") boolean gzip,
+                                                             HttpServletRequest request) {
+        String actualToken = token.replace("Bearer ", "");
+        User user = getAuthenticatedUser(actualToken);
+        StreamingTimeoutConfig.longStream(request);
+
+        ObjectWriter writer = objectMapper.writerFor(NoteExportRecord.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(target)) {
+                noteService.forEachNote(user, note -> {
+                    try {
+                        writer.writeValue(generator, NoteExportRecord.from(note, noteService.getFullContent(note)));
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+
+        String filename = "notes-" + user.getUsername() + (gzip ? ".ndjson.gz" : ".ndjson");
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+
+    /**
+     * Bulk import from NDJSON (the export format) or a zip of Markdown files. The request
+     * body is parsed as it arrives; a gzip Content-Encoding is decoded on the fly. A body that
+     * breaks off after notes were already imported still gets 200, with "interrupted" saying
+     * where it stopped.
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "application/zip"})
+    public ResponseEntity<?> importNotes(@RequestHeader("Authorization") String token,
+                                         @RequestHeader(value = "Content-Encoding", required = false) String contentEncoding,
+                                         @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                         HttpServletRequest request) {
+        try {
+            String actualToken = token.replace("Bearer ", "");
+            User user = getAuthenticatedUser(actualToken);
+
+            // The body is only read while importing; IdempotencyStore hashes it as it goes
+            String fingerprint = "POST /api/notes/import " + request.getContentType() + " " + contentEncoding;
+            return idempotent(user, idempotencyKey, fingerprint, request.getInputStream(), in -> {
+                InputStream body = in;
+                if ("gzip".equalsIgnoreCase(contentEncoding)) {
+                    body = new GZIPInputStream(body, 64 * 1024);
+                }
+                NoteImportResult result = MediaType.APPLICATION_NDJSON.includes(MediaType.parseMediaType(request.getContentType()))
+                        ? noteImportService.importNdjson(user, body)
+                        : noteImportService.importMarkdownZip(user, body);
+                return ResponseEntity.ok(result);
+            });
+        } catch (IdempotencyKeyInUseException | IdempotencyKeyMismatchException e) {
+            return idempotencyConflict(e);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * Server-Sent Events stream of the user's note changes. Browsers' EventSource cannot
+     * set headers, so the JWT may also be passed as the access_token query parameter.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamNoteChanges(@RequestHeader(value = "Authorization", required = false) String token,
+                                        @RequestParam(value = "access_token", required = false) String accessToken) {
+        String actualToken = token != null ? token.replace("Bearer ", "") : accessToken;
+        User user = getAuthenticatedUser(actualToken);
+        return noteEventBus.openStream(user.getId());
+    }
+
+    /**
+     * Active and archived note counts, in total and per tag, without reading any note.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> getStats(@RequestHeader("Authorization") String token) {
+        try {
+            String actualToken = token.replace("Bearer ", "");
+            User user = getAuthenticatedUser(actualToken);
+            return ResponseEntity.ok(noteService.getStats(user));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * A single note with its full content. Lists only carry a preview of large notes
+     * (contentTruncated = true); clients fetch the note here before editing it.
+     */
+    @GetMapping("/{noteId}")
+    public ResponseEntity<?> getNote(@RequestHeader("Authorization") String token,
+                                     @PathVariable Long noteId,
+                                     @RequestParam(required = false) String fields) {
+        try {
+            String actualToken = token.replace("Bearer ", "");
+            User user = getAuthenticatedUser(actualToken);
+            Note note = noteService.getNote(noteId, user, NoteFields.parse(fields));
+            return ResponseEntity.ok().eTag(String.valueOf(note.getVersion())).body(render(note, fields));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * Creates a note. Clients that retry on network errors send an Idempotency-Key, so a retry
+     * returns the note created the first time instead of creating another one.
+     */
     @PostMapping("/create")
     public ResponseEntity<?> createNote(@RequestHeader("Authorization") String token,
+                                        @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                        @RequestParam(required = false) String fields,
                                         @RequestBody Map<String, Object> payload) {
         try {
             String actualToken = token.replace("Bearer ", "");
             User user = getAuthenticatedUser(actualToken);
 
-            String title = (String) payload.get("title");
-            String content = (String) payload.get("content");
-            List<String> tagNames = (List<String>) payload.get("tags");
+            String fingerprint = "POST /api/notes/create " + fields + " " + objectMapper.writeValueAsString(payload);
+            return idempotent(user, idempotencyKey, fingerprint, null, in -> {
+                String title = (String) payload.get("title");
+                String content = (String) payload.get("content");
+                List<String> tagNames = (List<String>) payload.get("tags");
 
-            Note note = noteService.createNote(user, title, content, tagNames);
-            return ResponseEntity.ok(note);
+                Note note = noteService.createNote(user, title, content, tagNames);
+                return ResponseEntity.ok(render(note, fields));
+            });
+        } catch (IdempotencyKeyInUseException | IdempotencyKeyMismatchException e) {
+            return idempotencyConflict(e);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", e.getMessage());
@@ -88,7 +418,9 @@ public class NoteController {
 
     @PutMapping("/{noteId}")
     public ResponseEntity<?> updateNote(@RequestHeader("Authorization") String token,
+                                      @RequestHeader(value = "If-Match", required = false) String ifMatch,
                                       @PathVariable Long noteId,
+                                      @RequestParam(required = false) String fields,
                                       @RequestBody Map<String, Object> payload) {
         try {
             String actualToken = token.replace("Bearer ", "");
@@ -98,8 +430,105 @@ public class NoteController {
             String content = (String) payload.get("content");
             List<String> tagNames = (List<String>) payload.get("tags");
 
-            Note note = noteService.updateNote(noteId, user, title, content, tagNames);
-            return ResponseEntity.ok(note);
+            Note note = noteService.updateNote(noteId, user, parseVersion(ifMatch), title, content, tagNames);
+            return ResponseEntity.ok().eTag(String.valueOf(note.getVersion())).body(render(note, fields));
+        } catch (NoteVersionConflictException | OptimisticLockingFailureException e) {
+            return versionConflict(e);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * Partial update: only the fields present in the payload are changed.
+     * An If-Match header with the note's ETag guards against overwriting concurrent edits.
+     */
+    @PatchMapping("/{noteId}")
+    public ResponseEntity<?> patchNote(@RequestHeader("Authorization") String token,
+                                       @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                       @PathVariable Long noteId,
+                                       @RequestParam(required = false) String fields,
+                                       @RequestBody Map<String, Object> payload) {
+        try {
+            String actualToken = token.replace("Bearer ", "");
+            User user = getAuthenticatedUser(actualToken);
+
+            String title = (String) payload.get("title");
+            String content = (String) payload.get("content");
+            List<String> tagNames = (List<String>) payload.get("tags");
+
+            Note note = noteService.patchNote(noteId, user, parseVersion(ifMatch), title, content, tagNames);
+            return ResponseEntity.ok().eTag(String.valueOf(note.getVersion())).body(render(note, fields));
+        } catch (NoteVersionConflictException | OptimisticLockingFailureException e) {
+            return versionConflict(e);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * Incremental content update for large notes: the request carries only the edited
+     * ranges and the response only the new version and hash, never the full content.
+     */
+    @PatchMapping("/{noteId}/content")
+    public ResponseEntity<?> editNoteContent(@RequestHeader("Authorization") String token,
+                                             @PathVariable Long noteId,
+                                             @Valid @RequestBody ContentEditRequest request) {
+        try {
+            String actualToken = token.replace("Bearer ", "");
+            User user = getAuthenticatedUser(actualToken);
+
+            Note note = noteService.applyContentEdits(noteId, user, request);
+            Map<String, Object> response = new HashMap<>();
+            response.put("id", note.getId());
+            response.put("version", note.getVersion());
+            response.put("contentHash", request.getContentHash());
+            return ResponseEntity.ok().eTag(String.valueOf(note.getVersion())).body(response);
+        } catch (NoteVersionConflictException | OptimisticLockingFailureException e) {
+            return versionConflict(e);
+        } catch (ContentHashMismatchException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * Saved versions of the note, newest first, without their content.
+     */
+    @GetMapping("/{noteId}/revisions")
+    public ResponseEntity<?> getRevisions(@RequestHeader("Authorization") String token,
+                                          @PathVariable Long noteId) {
+        try {
+            String actualToken = token.replace("Bearer ", "");
+            User user = getAuthenticatedUser(actualToken);
+            return ResponseEntity.ok(noteService.getRevisions(noteId, user));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * Title and content of the note as they were at the given revision.
+     */
+    @GetMapping("/{noteId}/revisions/{revision}")
+    public ResponseEntity<?> getRevision(@RequestHeader("Authorization") String token,
+                                         @PathVariable Long noteId,
+                                         @PathVariable int revision) {
+        try {
+            String actualToken = token.replace("Bearer ", "");
+            User user = getAuthenticatedUser(actualToken);
+            return ResponseEntity.ok(noteService.getRevision(noteId, revision, user));
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", e.getMessage());
@@ -109,12 +538,13 @@ public class NoteController {
 
     @PutMapping("/{noteId}/archive")
     public ResponseEntity<?> toggleArchiveStatus(@RequestHeader("Authorization") String token,
-                                                 @PathVariable Long noteId) {
+                                                 @PathVariable Long noteId,
+                                                 @RequestParam(required = false) String fields) {
         try {
             String actualToken = token.replace("Bearer ", "");
             User user = getAuthenticatedUser(actualToken);
             Note note = noteService.toggleArchiveStatus(noteId, user);
-            return ResponseEntity.ok(note);
+            return ResponseEntity.ok(render(note, fields));
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", e.getMessage());
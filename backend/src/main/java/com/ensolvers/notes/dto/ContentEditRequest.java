@@ -0,0 +1,47 @@
+package com.ensolvers.notes.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * DTO for incremental content updates: a list of splices applied in order
+ * to the content of the note at baseVersion.
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class ContentEditRequest {
+
+    @NotNull(message = "Base version is required")
+    private Long baseVersion;
+
+    @NotEmpty(message = "At least one edit is required")
+    @Valid
+    private List<Splice> edits;
+
+    // SHA-256 (hex) of the UTF-8 content the client expects after applying the edits
+    @NotNull(message = "Content hash is required")
+    private String contentHash;
+
+    /**
+     * Removes deleteCount characters at offset and inserts text there. Offsets count
+     * UTF-16 code units, the same as JavaScript string indices, and refer to the content
+     * as left by the previous splice.
+     */
+    @Getter @Setter
+    @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class Splice {
+
+        @PositiveOrZero(message = "Offset cannot be negative")
+        private int offset;
+
+        @PositiveOrZero(message = "Delete count cannot be negative")
+        private int deleteCount;
+
+        private String insert;
+    }
+}
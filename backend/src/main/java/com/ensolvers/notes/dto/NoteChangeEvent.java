@@ -0,0 +1,25 @@
+package com.ensolvers.notes.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO pushed to the note change stream whenever one of the user's notes changes.
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class NoteChangeEvent {
+
+    public enum Type {
+        CREATED, UPDATED, ARCHIVED, UNARCHIVED, DELETED,
+        // Sent when the subscriber fell behind and events were dropped; clients should refetch
+        RESYNC
+    }
+
+    private Type type;
+    private Long noteId;
+
+    @Builder.Default
+    private LocalDateTime timestamp = LocalDateTime.now();
+}
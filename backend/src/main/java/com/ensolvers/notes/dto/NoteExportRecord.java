@@ -0,0 +1,37 @@
+package com.ensolvers.notes.dto;
+
+import com.ensolvers.notes.model.Note;
+import com.ensolvers.notes.model.Tag;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for one line of a note export (NDJSON). Tags are exported by name so the
+ * file can be imported into another account or instance.
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class NoteExportRecord {
+    private Long id;
+    private String title;
+    private String content;
+    private boolean archived;
+    private LocalDateTime createdAt;
+    private Long version;
+    private List<String> tags;
+
+    // content is the note's full text, which for large notes is not note.getContent()
+    public static NoteExportRecord from(Note note, String content) {
+        return NoteExportRecord.builder()
+                .id(note.getId())
+                .title(note.getTitle())
+                .content(content)
+                .archived(note.isArchived())
+                .createdAt(note.getCreatedAt())
+                .version(note.getVersion())
+                .tags(note.getTags().stream().map(Tag::getName).sorted().toList())
+                .build();
+    }
+}
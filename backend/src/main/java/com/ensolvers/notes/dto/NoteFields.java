@@ -0,0 +1,97 @@
+package com.ensolvers.notes.dto;
+
+import com.ensolvers.notes.model.Note;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The note properties a client asked for with fields=, e.g. fields=id,title. id is always
+ * included. Lists read only the matching columns (see NoteRepositoryCustom) and every note
+ * response is written with only these properties, in this order.
+ */
+public final class NoteFields {
+
+    public enum Field {
+        ID("id", "n.id", Note::getId),
+        TITLE("title", "n.title", Note::getTitle),
+        CONTENT("content", "n.content", Note::getContent),
+        CONTENT_TRUNCATED("contentTruncated", "n.contentTruncated", Note::isContentTruncated),
+        ARCHIVED("archived", "n.archived", Note::isArchived),
+        VERSION("version", "n.version", Note::getVersion),
+        CREATED_AT("createdAt", "n.createdAt", Note::getCreatedAt),
+        UPDATED_AT("updatedAt", "n.updatedAt", Note::getUpdatedAt),
+        // Not a column: read with a second query for the whole batch of notes
+        TAGS("tags", null, Note::getTags);
+
+        private final String property;
+        private final String path;
+        private final Function<Note, Object> getter;
+
+        Field(String property, String path, Function<Note, Object> getter) {
+            this.property = property;
+            this.path = path;
+            this.getter = getter;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+
+        // JPQL path on the alias "n", null for tags
+        public String getPath() {
+            return path;
+        }
+    }
+
+    private static final Map<String, Field> BY_PROPERTY = Arrays.stream(Field.values())
+            .collect(Collectors.toMap(Field::getProperty, Function.identity()));
+
+    private final EnumSet<Field> fields;
+
+    private NoteFields(EnumSet<Field> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * Parses a comma-separated list of property names; null means every property.
+     */
+    public static NoteFields parse(String fields) {
+        if (fields == null) {
+            return new NoteFields(EnumSet.allOf(Field.class));
+        }
+        EnumSet<Field> parsed = EnumSet.of(Field.ID);
+        for (String name : fields.split(",")) {
+            if (name.isBlank()) {
+                continue;
+            }
+            Field field = BY_PROPERTY.get(name.trim());
+            if (field == null) {
+                throw new RuntimeException("Unknown field: " + name.trim());
+            }
+            parsed.add(field);
+        }
+        return new NoteFields(parsed);
+    }
+
+    public boolean contains(Field field) {
+        return fields.contains(field);
+    }
+
+    // Every selected field that is a column, in order; id first
+    public List<Field> columns() {
+        return fields.stream().filter(field -> field.getPath() != null).toList();
+    }
+
+    /**
+     * The note as a JSON-ready map holding only the selected properties.
+     */
+    public Map<String, Object> toMap(Note note) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        for (Field field : fields) {
+            view.put(field.getProperty(), field.getter.apply(note));
+        }
+        return view;
+    }
+}
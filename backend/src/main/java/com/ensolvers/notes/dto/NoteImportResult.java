@@ -0,0 +1,38 @@
+package com.ensolvers.notes.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO summarizing a bulk import: how many notes were created and why the others were not.
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class NoteImportResult {
+
+    private long imported;
+    private long failed;
+
+    // Only the first errors are listed; "failed" always has the full count
+    @Builder.Default
+    private List<ImportError> errors = new ArrayList<>();
+
+    // Set when the input broke off: the last line or entry read, and why nothing after it was
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ImportError interrupted;
+
+    /**
+     * A rejected input item: the NDJSON line number or the zip entry name.
+     */
+    @Getter @Setter
+    @NoArgsConstructor @AllArgsConstructor @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class ImportError {
+        private Long line;
+        private String entry;
+        private String error;
+    }
+}
@@ -0,0 +1,40 @@
+package com.ensolvers.notes.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+import lombok.*;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Query parameters of the note lists. Without any of them the whole list is returned
+ * (from the list cache); with any of them one sorted, filtered page is read from the database.
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class NoteListRequest {
+
+    // title, createdAt, updatedAt or id; prefixed with "-" for descending order
+    @Pattern(regexp = "-?(title|createdAt|updatedAt|id)", message = "Sort must be title, createdAt, updatedAt or id, optionally prefixed with -")
+    private String sort;
+
+    // Inclusive lower and exclusive upper bound of createdAt
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdTo;
+
+    @Min(value = 0, message = "Page cannot be negative")
+    private Integer page;
+
+    @Min(value = 1, message = "Size must be at least 1")
+    @Max(value = 200, message = "Size cannot be more than 200")
+    private Integer size;
+
+    public boolean isPaged() {
+        return sort != null || createdFrom != null || createdTo != null || page != null || size != null;
+    }
+}
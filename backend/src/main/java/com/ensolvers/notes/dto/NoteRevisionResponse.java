@@ -0,0 +1,19 @@
+package com.ensolvers.notes.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO with a past version of a note, rebuilt from its revision history.
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class NoteRevisionResponse {
+
+    private Long noteId;
+    private int revision;
+    private String title;
+    private String content;
+    private LocalDateTime createdAt;
+}
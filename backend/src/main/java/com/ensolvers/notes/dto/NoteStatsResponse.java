@@ -0,0 +1,30 @@
+package com.ensolvers.notes.dto;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO with the number of active and archived notes of a user, in total and per tag.
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class NoteStatsResponse {
+
+    private long active;
+    private long archived;
+
+    // Only tags with at least one note, by name
+    @Builder.Default
+    private List<TagCount> tags = new ArrayList<>();
+
+    @Getter @Setter
+    @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class TagCount {
+        private Long id;
+        private String name;
+        private long active;
+        private long archived;
+    }
+}
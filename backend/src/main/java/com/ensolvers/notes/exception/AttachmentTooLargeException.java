@@ -0,0 +1,11 @@
+package com.ensolvers.notes.exception;
+
+/**
+ * Thrown when an upload goes over notes.attachments.max-size.
+ */
+public class AttachmentTooLargeException extends RuntimeException {
+
+    public AttachmentTooLargeException(long maxSize) {
+        super("Attachment exceeds the maximum size of " + maxSize + " bytes");
+    }
+}
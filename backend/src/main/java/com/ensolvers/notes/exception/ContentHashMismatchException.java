@@ -0,0 +1,11 @@
+package com.ensolvers.notes.exception;
+
+/**
+ * Thrown when applying content edits does not produce the content the client expected.
+ */
+public class ContentHashMismatchException extends RuntimeException {
+
+    public ContentHashMismatchException(Long noteId) {
+        super("Edited content of note " + noteId + " does not match the expected hash");
+    }
+}
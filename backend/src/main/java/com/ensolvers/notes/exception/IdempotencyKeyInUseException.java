@@ -0,0 +1,13 @@
+package com.ensolvers.notes.exception;
+
+/**
+ * Thrown when a request arrives with an Idempotency-Key whose first request is still being
+ * processed on another instance. Mapped to 409 Conflict; the client retries later and gets
+ * the first response back.
+ */
+public class IdempotencyKeyInUseException extends RuntimeException {
+
+    public IdempotencyKeyInUseException(String key) {
+        super("A request with Idempotency-Key " + key + " is still being processed");
+    }
+}
@@ -0,0 +1,12 @@
+package com.ensolvers.notes.exception;
+
+/**
+ * Thrown when an Idempotency-Key is reused for a different request than the one it was first
+ * sent with. Mapped to 422 Unprocessable Entity.
+ */
+public class IdempotencyKeyMismatchException extends RuntimeException {
+
+    public IdempotencyKeyMismatchException(String key) {
+        super("Idempotency-Key " + key + " was already used for a different request");
+    }
+}
@@ -0,0 +1,17 @@
+package com.ensolvers.notes.exception;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a client updates a note based on a version that is no longer current.
+ */
+@Getter
+public class NoteVersionConflictException extends RuntimeException {
+
+    private final Long currentVersion;
+
+    public NoteVersionConflictException(Long noteId, Long expectedVersion, Long currentVersion) {
+        super("Note " + noteId + " is at version " + currentVersion + ", not " + expectedVersion);
+        this.currentVersion = currentVersion;
+    }
+}
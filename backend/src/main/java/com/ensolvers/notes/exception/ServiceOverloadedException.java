@@ -0,0 +1,18 @@
+package com.ensolvers.notes.exception;
+
+import lombok.Getter;
+
+/**
+ * Thrown when work is shed because a bounded resource is saturated.
+ * Mapped to 503 Service Unavailable with a Retry-After header.
+ */
+@Getter
+public class ServiceOverloadedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
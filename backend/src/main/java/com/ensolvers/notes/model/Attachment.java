@@ -0,0 +1,41 @@
+package com.ensolvers.notes.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A file attached to a note. The content is stored once on disk under its SHA-256
+ * (see AttachmentService); this row links it to the note with its name and type.
+ */
+@Entity
+@Table(name = "note_attachments")
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class Attachment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "note_id", nullable = false)
+    private Long noteId;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "content_type", nullable = false)
+    private String contentType;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long size;
+
+    // Hex SHA-256 of the content; names the file on disk and is the download ETag
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -1,8 +1,15 @@
 package com.ensolvers.notes.model;
 
+import com.ensolvers.notes.config.HibernateCacheConfig;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UpdateTimestamp;
+
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
@@ -12,6 +19,7 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "notes")
+@DynamicUpdate
 @Getter @Setter
 @NoArgsConstructor @AllArgsConstructor @Builder
 public class Note {
@@ -23,25 +31,45 @@ public class Note {
     @Column(nullable = false)
     private String title;
 
+    // Full text, or only a preview when contentTruncated (see NoteContentStore)
     @Column(columnDefinition = "TEXT")
     private String content;
 
+    // The full text is stored compressed in note_bodies; fetch the note by id to get it
+    @Column(name = "content_truncated", nullable = false)
+    @ColumnDefault("false")
+    @Builder.Default
+    private boolean contentTruncated = false;
+
     @Column(nullable = false)
     @Builder.Default
     private boolean archived = false;
 
+    // Optimistic lock; also exposed to clients as the note's ETag
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private Long version;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     @Builder.Default
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    // Set by Hibernate on every update of the note row, archiving included
+    @Column(name = "updated_at", nullable = false)
+    @UpdateTimestamp
+    @Builder.Default
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
     // Relation with User (many notes per user)
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     @JsonIgnore
     private User user;
 
-    // Relation with Tags (many-to-many)
+    // Relation with Tags (many-to-many); the tag ids are cached, the tags come from their own region
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.NOTE_TAGS_REGION)
     @JoinTable(
         name = "note_tags",
         joinColumns = @JoinColumn(name = "note_id"),
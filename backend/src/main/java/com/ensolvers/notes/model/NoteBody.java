@@ -0,0 +1,29 @@
+package com.ensolvers.notes.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Full, compressed content of a note too large to be kept inline in notes.content.
+ * Only loaded when the whole text is needed, never by list queries.
+ */
+@Entity
+@Table(name = "note_bodies")
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class NoteBody {
+
+    @Id
+    @Column(name = "note_id")
+    private Long noteId;
+
+    @Column(nullable = false, length = 16)
+    private String codec;
+
+    // Length of the text in UTF-8 bytes
+    @Column(name = "original_length", nullable = false)
+    private int originalLength;
+
+    @Column(nullable = false)
+    private byte[] data;
+}
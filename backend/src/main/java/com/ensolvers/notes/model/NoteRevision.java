@@ -0,0 +1,53 @@
+package com.ensolvers.notes.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * One saved version of a note. Snapshots hold the compressed full content; the other
+ * revisions hold a compressed delta against the revision before them (see NoteRevisionStore).
+ */
+@Entity
+@Table(name = "note_revisions")
+@IdClass(NoteRevision.Key.class)
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class NoteRevision {
+
+    @Id
+    @Column(name = "note_id")
+    private Long noteId;
+
+    // 1 for the first recorded version, then consecutive
+    @Id
+    private int revision;
+
+    @Column(nullable = false)
+    private String title;
+
+    @Column(nullable = false)
+    private boolean snapshot;
+
+    @Column(nullable = false, length = 16)
+    private String codec;
+
+    // Length of the uncompressed payload in UTF-8 bytes
+    @Column(name = "original_length", nullable = false)
+    private int originalLength;
+
+    @Column(nullable = false)
+    private byte[] data;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Data
+    @NoArgsConstructor @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long noteId;
+        private int revision;
+    }
+}
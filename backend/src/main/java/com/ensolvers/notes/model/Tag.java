@@ -1,8 +1,11 @@
 package com.ensolvers.notes.model;
 
+import com.ensolvers.notes.config.HibernateCacheConfig;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -12,6 +15,7 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "tags")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.TAGS_REGION)
 @Getter @Setter
 @NoArgsConstructor @AllArgsConstructor @Builder
 public class Tag {
@@ -0,0 +1,19 @@
+package com.ensolvers.notes.repository;
+
+import com.ensolvers.notes.model.Attachment;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for note attachments.
+ */
+public interface AttachmentRepository extends JpaRepository<Attachment, Long> {
+
+    List<Attachment> findByNoteIdOrderById(Long noteId);
+
+    Optional<Attachment> findByIdAndNoteId(Long id, Long noteId);
+
+    boolean existsBySha256(String sha256);
+}
@@ -0,0 +1,32 @@
+package com.ensolvers.notes.repository;
+
+import com.ensolvers.notes.model.NoteBody;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for the compressed bodies of large notes.
+ */
+public interface NoteBodyRepository extends JpaRepository<NoteBody, Long> {
+
+    // Read-only view of a body; not a managed entity, so exports do not pile bodies up in the session
+    interface StoredBody {
+        Long getNoteId();
+        String getCodec();
+        int getOriginalLength();
+        byte[] getData();
+    }
+
+    @Query("select b.noteId as noteId, b.codec as codec, b.originalLength as originalLength, b.data as data"
+            + " from NoteBody b where b.noteId = :noteId")
+    Optional<StoredBody> findStoredBody(@Param("noteId") Long noteId);
+
+    @Query("select b.noteId as noteId, b.codec as codec, b.originalLength as originalLength, b.data as data"
+            + " from NoteBody b where b.noteId in :noteIds")
+    List<StoredBody> findStoredBodies(@Param("noteIds") Collection<Long> noteIds);
+}
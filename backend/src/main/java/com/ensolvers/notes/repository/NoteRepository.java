@@ -2,17 +2,64 @@ package com.ensolvers.notes.repository;
 
 import com.ensolvers.notes.model.Note;
 import com.ensolvers.notes.model.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository for accessing and managing Note entities.
  */
-public interface NoteRepository extends JpaRepository<Note, Long> {
+public interface NoteRepository extends JpaRepository<Note, Long>, NoteRepositoryCustom {
 
     // Find all notes belonging to a specific user
     List<Note> findByUser(User user);
 
-    // Find notes by user and archive state
+    // Find notes by user and archive state, with their tags in the same query
+    @EntityGraph(attributePaths = "tags")
     List<Note> findByUserAndArchived(User user, boolean archived);
+
+    // Ids of one page of a user's notes, in the order of the pageable's sort. Only ids are paged so
+    // the sort can be read from a (user_id, <column>, id) index; the notes are loaded by findByIdIn
+    @Query("select n.id from Note n where n.user = :user and n.archived = :archived"
+            + " and n.createdAt >= :createdFrom and n.createdAt < :createdTo")
+    Slice<Long> findIdPage(@Param("user") User user, @Param("archived") boolean archived,
+                           @Param("createdFrom") LocalDateTime createdFrom,
+                           @Param("createdTo") LocalDateTime createdTo, Pageable pageable);
+
+    @EntityGraph(attributePaths = "tags")
+    List<Note> findByIdIn(Collection<Long> ids);
+
+    // Row lock (SELECT ... FOR UPDATE) held until the transaction ends; an already loaded note keeps its state
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select n from Note n where n.id = :id")
+    Optional<Note> lockById(@Param("id") Long id);
+
+    // Cursor over a user's notes for streaming responses; must be consumed inside a transaction
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select n from Note n where n.user = :user and n.archived = :archived order by n.id")
+    Stream<Note> streamByUserAndArchived(@Param("user") User user, @Param("archived") boolean archived);
+
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select n from Note n where n.user = :user order by n.id")
+    Stream<Note> streamByUser(@Param("user") User user);
 }
@@ -0,0 +1,27 @@
+package com.ensolvers.notes.repository;
+
+import com.ensolvers.notes.dto.NoteFields;
+import com.ensolvers.notes.model.Tag;
+import com.ensolvers.notes.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Queries for sparse fieldsets: they select only the columns of the requested fields and
+ * return each note as a map of property to value. Tags are not included; they are read
+ * for a batch of notes with findTagsByNoteIdIn.
+ */
+public interface NoteRepositoryCustom {
+
+    // Cursor over a user's active or archived notes, by id; must be consumed inside a transaction
+    Stream<Map<String, Object>> streamFields(User user, boolean archived, NoteFields fields);
+
+    // In no particular order
+    List<Map<String, Object>> findFieldsByIdIn(Collection<Long> ids, NoteFields fields);
+
+    // Tags of each note, by name; notes without tags are absent
+    Map<Long, List<Tag>> findTagsByNoteIdIn(Collection<Long> ids);
+}
@@ -0,0 +1,74 @@
+package com.ensolvers.notes.repository;
+
+import com.ensolvers.notes.dto.NoteFields;
+import com.ensolvers.notes.dto.NoteFields.Field;
+import com.ensolvers.notes.model.Tag;
+import com.ensolvers.notes.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of NoteRepositoryCustom, picked up by Spring Data for NoteRepository.
+ */
+public class NoteRepositoryImpl implements NoteRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Stream<Map<String, Object>> streamFields(User user, boolean archived, NoteFields fields) {
+        return entityManager.createQuery(select(fields)
+                        + " where n.user = :user and n.archived = :archived order by n.id", Tuple.class)
+                .setParameter("user", user)
+                .setParameter("archived", archived)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, 500)
+                .getResultStream()
+                .map(tuple -> toMap(tuple, fields));
+    }
+
+    @Override
+    public List<Map<String, Object>> findFieldsByIdIn(Collection<Long> ids, NoteFields fields) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return entityManager.createQuery(select(fields) + " where n.id in :ids", Tuple.class)
+                .setParameter("ids", ids)
+                .getResultStream()
+                .map(tuple -> toMap(tuple, fields))
+                .toList();
+    }
+
+    @Override
+    public Map<Long, List<Tag>> findTagsByNoteIdIn(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return entityManager.createQuery(
+                        "select n.id, t from Note n join n.tags t where n.id in :ids order by t.name", Tuple.class)
+                .setParameter("ids", ids)
+                .getResultStream()
+                .collect(Collectors.groupingBy(tuple -> tuple.get(0, Long.class),
+                        Collectors.mapping(tuple -> tuple.get(1, Tag.class), Collectors.toList())));
+    }
+
+    private static String select(NoteFields fields) {
+        return fields.columns().stream()
+                .map(Field::getPath)
+                .collect(Collectors.joining(", ", "select ", " from Note n"));
+    }
+
+    private static Map<String, Object> toMap(Tuple tuple, NoteFields fields) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        List<Field> columns = fields.columns();
+        for (int i = 0; i < columns.size(); i++) {
+            view.put(columns.get(i).getProperty(), tuple.get(i));
+        }
+        return view;
+    }
+}
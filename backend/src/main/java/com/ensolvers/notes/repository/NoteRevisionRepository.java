@@ -0,0 +1,34 @@
+package com.ensolvers.notes.repository;
+
+import com.ensolvers.notes.model.NoteRevision;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for note revision history.
+ */
+public interface NoteRevisionRepository extends JpaRepository<NoteRevision, NoteRevision.Key> {
+
+    // Revision list without the stored content
+    interface RevisionSummary {
+        int getRevision();
+        String getTitle();
+        LocalDateTime getCreatedAt();
+    }
+
+    @Query("select max(r.revision) from NoteRevision r where r.noteId = :noteId")
+    Integer findLatestRevision(@Param("noteId") Long noteId);
+
+    List<RevisionSummary> findByNoteIdOrderByRevisionDesc(Long noteId);
+
+    List<NoteRevision> findByNoteIdAndRevisionBetweenOrderByRevision(Long noteId, int from, int to);
+
+    @Modifying
+    @Query("delete from NoteRevision r where r.noteId = :noteId")
+    void deleteByNoteId(@Param("noteId") Long noteId);
+}
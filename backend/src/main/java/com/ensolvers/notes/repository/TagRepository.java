@@ -1,7 +1,14 @@
 package com.ensolvers.notes.repository;
 
+import com.ensolvers.notes.config.HibernateCacheConfig;
 import com.ensolvers.notes.model.Tag;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -10,7 +17,14 @@ import java.util.Optional;
 public interface TagRepository extends JpaRepository<Tag, Long> {
 
     // Find a tag by its name (to prevent duplicates)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = HibernateCacheConfig.TAG_QUERIES_REGION)
+    })
     Optional<Tag> findByName(String name);
 
     boolean existsByName(String name);
+
+    // Resolve many tags in one query (bulk import)
+    List<Tag> findByNameIn(Collection<String> names);
 }
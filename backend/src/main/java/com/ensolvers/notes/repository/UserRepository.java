@@ -1,7 +1,11 @@
 package com.ensolvers.notes.repository;
 
+import com.ensolvers.notes.config.HibernateCacheConfig;
 import com.ensolvers.notes.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import java.util.Optional;
 
 /**
@@ -9,7 +13,11 @@ import java.util.Optional;
  */
 public interface UserRepository extends JpaRepository<User, Long> {
 
-    // Custom finder to support authentication
+    // Custom finder to support authentication; cached since every request resolves its user
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = HibernateCacheConfig.USER_QUERIES_REGION)
+    })
     Optional<User> findByUsername(String username);
 
     boolean existsByUsername(String username);
@@ -0,0 +1,241 @@
+package com.ensolvers.notes.service;
+
+import com.ensolvers.notes.exception.AttachmentTooLargeException;
+import com.ensolvers.notes.model.Attachment;
+import com.ensolvers.notes.model.Note;
+import com.ensolvers.notes.model.User;
+import com.ensolvers.notes.repository.AttachmentRepository;
+import com.ensolvers.notes.repository.NoteRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Stores note attachments on the local filesystem, content-addressed by SHA-256 under
+ * notes.attachments.dir (ab/cd/abcd...), so identical files are kept once. Uploads are
+ * streamed to a temporary file while hashing and then moved into place; a file is removed
+ * once no attachment row references it.
+ */
+@Service
+public class AttachmentService {
+
+    private static final Logger log = LoggerFactory.getLogger(AttachmentService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int LOCK_STRIPES = 64;
+
+    private final AttachmentRepository attachmentRepository;
+    private final NoteRepository noteRepository;
+
+    // Serializes "link a file" and "unlink and maybe delete it" for the same content on this node
+    private final ReentrantLock[] fileLocks = new ReentrantLock[LOCK_STRIPES];
+
+    @Value("${notes.attachments.dir:data/attachments}")
+    private String dir;
+
+    @Value("${notes.attachments.max-size:50MB}")
+    private DataSize maxSize;
+
+    private Path root;
+    private Path uploads;
+
+    @Autowired
+    public AttachmentService(AttachmentRepository attachmentRepository, NoteRepository noteRepository) {
+        this.attachmentRepository = attachmentRepository;
+        this.noteRepository = noteRepository;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            fileLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    public void createDirectories() throws IOException {
+        root = Paths.get(dir).toAbsolutePath().normalize();
+        // Same filesystem as the final files, so moving an upload into place is atomic
+        uploads = Files.createDirectories(root.resolve("tmp"));
+    }
+
+    /**
+     * Streams the content to disk and links it to the note. Never holds more than one
+     * buffer of the file in memory.
+     */
+    public Attachment store(Long noteId, User user, String fileName, String contentType, InputStream in)
+            throws IOException {
+        findOwnedNote(noteId, user);
+
+        Path temp = Files.createTempFile(uploads, "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            long size = 0;
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxSize.toBytes()) {
+                        throw new AttachmentTooLargeException(maxSize.toBytes());
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+
+            ReentrantLock lock = lockFor(hash);
+            lock.lock();
+            try {
+                Path target = pathOf(hash);
+                if (!Files.exists(target)) {
+                    Files.createDirectories(target.getParent());
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+                return attachmentRepository.save(Attachment.builder()
+                        .noteId(noteId)
+                        .fileName(cleanFileName(fileName))
+                        .contentType(cleanContentType(contentType))
+                        .size(size)
+                        .sha256(hash)
+                        .build());
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public List<Attachment> getAttachments(Long noteId, User user) {
+        findOwnedNote(noteId, user);
+        return attachmentRepository.findByNoteIdOrderById(noteId);
+    }
+
+    public Attachment getAttachment(Long noteId, Long attachmentId, User user) {
+        findOwnedNote(noteId, user);
+        return attachmentRepository.findByIdAndNoteId(attachmentId, noteId)
+                .orElseThrow(() -> new RuntimeException("Attachment not found"));
+    }
+
+    public Path fileOf(Attachment attachment) {
+        return pathOf(attachment.getSha256());
+    }
+
+    @Transactional
+    public void deleteAttachment(Long noteId, Long attachmentId, User user) {
+        Attachment attachment = getAttachment(noteId, attachmentId, user);
+        attachmentRepository.delete(attachment);
+        releaseFiles(Set.of(attachment.getSha256()));
+    }
+
+    /**
+     * Removes every attachment of a note being deleted; files go once the transaction commits.
+     */
+    public void deleteForNote(Long noteId) {
+        List<Attachment> attachments = attachmentRepository.findByNoteIdOrderById(noteId);
+        if (attachments.isEmpty()) {
+            return;
+        }
+        attachmentRepository.deleteAllInBatch(attachments);
+        releaseFiles(attachments.stream().map(Attachment::getSha256).collect(Collectors.toSet()));
+    }
+
+    // Files are only checked after the rows are gone for good, otherwise a rollback could leave dangling rows
+    private void releaseFiles(Collection<String> hashes) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deleteUnreferenced(hashes);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deleteUnreferenced(hashes);
+            }
+        });
+    }
+
+    private void deleteUnreferenced(Collection<String> hashes) {
+        for (String hash : hashes) {
+            ReentrantLock lock = lockFor(hash);
+            lock.lock();
+            try {
+                if (!attachmentRepository.existsBySha256(hash)) {
+                    Files.deleteIfExists(pathOf(hash));
+                }
+            } catch (IOException e) {
+                log.warn("Could not delete attachment file {}: {}", hash, e.getMessage());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private Note findOwnedNote(Long noteId, User user) {
+        Note note = noteRepository.findById(noteId)
+                .orElseThrow(() -> new RuntimeException("Note not found"));
+        if (!note.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("Unauthorized");
+        }
+        return note;
+    }
+
+    private Path pathOf(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private ReentrantLock lockFor(String hash) {
+        return fileLocks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+    }
+
+    // Only the last path segment, without control characters
+    private static String cleanFileName(String fileName) {
+        String name = fileName == null ? "" : fileName;
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        name = name.replaceAll("\\p{Cntrl}", "").trim();
+        if (name.isEmpty()) {
+            return "attachment";
+        }
+        return name.length() > 255 ? name.substring(0, 255) : name;
+    }
+
+    private static String cleanContentType(String contentType) {
+        try {
+            return contentType == null
+                    ? MediaType.APPLICATION_OCTET_STREAM_VALUE
+                    : MediaType.parseMediaType(contentType).toString();
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.ensolvers.notes.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of note bodies. Raw Deflate at its fastest level: text compresses well and
+ * the JDK codec needs no extra dependency.
+ */
+public final class ContentCodec {
+
+    public static final String DEFLATE = "deflate";
+
+    private ContentCodec() {
+    }
+
+    public static byte[] compress(String text) {
+        byte[] input = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 3));
+            byte[] buffer = new byte[16 * 1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @param originalLength length of the text in UTF-8 bytes, as stored with the data
+     */
+    public static String decompress(String codec, byte[] data, int originalLength) {
+        if (!DEFLATE.equals(codec)) {
+            throw new IllegalStateException("Unknown content codec: " + codec);
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            byte[] output = new byte[originalLength];
+            int length = 0;
+            while (length < originalLength && !inflater.finished()) {
+                int read = inflater.inflate(output, length, originalLength - length);
+                if (read == 0 && inflater.needsInput()) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != originalLength) {
+                throw new IllegalStateException("Corrupt note body: expected " + originalLength + " bytes, got " + length);
+            }
+            return new String(output, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt note body", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
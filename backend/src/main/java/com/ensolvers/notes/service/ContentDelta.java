@@ -0,0 +1,61 @@
+package com.ensolvers.notes.service;
+
+import com.ensolvers.notes.dto.ContentEditRequest.Splice;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Helpers to apply text splices to note content and fingerprint the result.
+ */
+public final class ContentDelta {
+
+    private ContentDelta() {
+    }
+
+    public static String apply(String content, List<Splice> splices) {
+        StringBuilder text = new StringBuilder(content != null ? content : "");
+        for (Splice splice : splices) {
+            int start = splice.getOffset();
+            int end = start + splice.getDeleteCount();
+            if (start < 0 || splice.getDeleteCount() < 0 || end > text.length()) {
+                throw new IllegalArgumentException("Edit out of range: offset " + start
+                        + ", delete " + splice.getDeleteCount() + ", length " + text.length());
+            }
+            text.replace(start, end, splice.getInsert() != null ? splice.getInsert() : "");
+        }
+        return text.toString();
+    }
+
+    /**
+     * A single splice turning before into after: everything between their common prefix
+     * and common suffix is replaced. Compact for the usual edit of one region of a note.
+     */
+    public static Splice diff(String before, String after) {
+        int max = Math.min(before.length(), after.length());
+        int prefix = 0;
+        while (prefix < max && before.charAt(prefix) == after.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && before.charAt(before.length() - 1 - suffix) == after.charAt(after.length() - 1 - suffix)) {
+            suffix++;
+        }
+        return new Splice(prefix, before.length() - prefix - suffix,
+                after.substring(prefix, after.length() - suffix));
+    }
+
+    public static String hash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = (content != null ? content : "").getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(digest.digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
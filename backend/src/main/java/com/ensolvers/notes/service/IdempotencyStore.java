@@ -0,0 +1,445 @@
+package com.ensolvers.notes.service;
+
+import com.ensolvers.notes.exception.IdempotencyKeyInUseException;
+import com.ensolvers.notes.exception.IdempotencyKeyMismatchException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Responses of writes sent with an Idempotency-Key, kept in idempotency_keys for
+ * notes.idempotency.ttl so a retried request gets the first response back instead of writing
+ * again. The key is claimed in the database before the write runs, so duplicates are caught
+ * across instances: a duplicate arriving while the first request still runs waits for it on
+ * the same instance and gets 409 (IdempotencyKeyInUseException) on any other.
+ * <p>
+ * Only successful responses are kept. A failed write changed nothing, so its claim is dropped
+ * and a retry runs it again. A write without a streamed body (a create) commits in one
+ * transaction with its response, so it can never have happened without the response being
+ * kept. While a write runs its claim is renewed every notes.idempotency.renew-interval-ms; one
+ * not renewed for notes.idempotency.lease was left by an instance that died mid-request and is
+ * taken over.
+ * <p>
+ * Bodies too large to hash before the write (imports) are hashed while the write reads them; the
+ * digest is kept with the response and a retry's body is compared with it before the replay.
+ */
+@Service
+public class IdempotencyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    /**
+     * What the client gets: the response of the write, or the stored one when replayed.
+     */
+    public record Result(int status, Object body, boolean replayed) {
+    }
+
+    private record Key(Long userId, String key) {
+    }
+
+    private record Flight(byte[] requestHash, CompletableFuture<Result> result) {
+    }
+
+    private record Stored(byte[] requestHash, Integer status, byte[] body, Integer length, Timestamp createdAt,
+                          Timestamp renewedAt, byte[] bodyHash, Long bodyLength, Boolean bodyComplete) {
+    }
+
+    /**
+     * The write; body is the request body as passed to execute, or null when there is none.
+     */
+    @FunctionalInterface
+    public interface Write<T> {
+        T run(InputStream body) throws Exception;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Map<Key, Flight> inFlight = new ConcurrentHashMap<>();
+    // Claims of the writes running on this instance, by the created_at they were stamped with
+    private final Map<Key, Timestamp> claimed = new ConcurrentHashMap<>();
+
+    @Value("${notes.idempotency.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${notes.idempotency.lease:10m}")
+    private Duration lease;
+
+    @Autowired
+    public IdempotencyStore(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                            ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Runs the write once per user and key. The request describes what was sent (method, path,
+     * parameters, body); reusing the key for another request is an IdempotencyKeyMismatchException.
+     */
+    public Result execute(Long userId, String key, String request, Write<Result> write) throws Exception {
+        return execute(userId, key, request, null, write);
+    }
+
+    /**
+     * Like execute(userId, key, request, write) for a request whose body only the write reads, so
+     * the request describes everything but the body. A retry's body must start with the bytes the
+     * first request got before it ended and, if the first body arrived in full, be exactly them;
+     * so a retried upload that broke off gets the partial result back.
+     */
+    public Result execute(Long userId, String key, String request, InputStream body, Write<Result> write)
+            throws Exception {
+        byte[] requestHash = sha256(request);
+        Key id = new Key(userId, key);
+        Flight flight = new Flight(requestHash, new CompletableFuture<>());
+        Flight running;
+        while ((running = inFlight.putIfAbsent(id, flight)) != null) {
+            if (!Arrays.equals(running.requestHash(), requestHash)) {
+                throw new IdempotencyKeyMismatchException(key);
+            }
+            if (body == null) {
+                Result first = join(running.result());
+                return new Result(first.status(), first.body(), true);
+            }
+            // Bodies are compared with the stored digest, so wait for the first request and go to the database
+            running.result().handle((result, e) -> null).join();
+        }
+
+        try {
+            // Microseconds, as stored, so it can be compared with the column afterwards
+            Timestamp claimedAt = Timestamp.valueOf(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+            Result result = claim(id, requestHash, body, claimedAt);
+            if (result == null) {
+                claimed.put(id, claimedAt);
+                try {
+                    result = body == null ? runInTransaction(id, claimedAt, write) : run(id, claimedAt, body, write);
+                } finally {
+                    claimed.remove(id);
+                }
+            }
+            flight.result().complete(result);
+            return result;
+        } catch (Exception e) {
+            flight.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, flight);
+        }
+    }
+
+    /**
+     * Deletes keys older than the TTL.
+     */
+    @Scheduled(fixedDelayString = "${notes.idempotency.purge-interval-ms:600000}")
+    public void purge() {
+        int purged = jdbcTemplate.update("DELETE FROM idempotency_keys WHERE created_at < ?",
+                Timestamp.valueOf(LocalDateTime.now().minus(ttl)));
+        if (purged > 0) {
+            log.debug("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    /**
+     * Renews the lease of the claims of the writes still running here, so a long import is not
+     * taken over by its own retry. Must run well within notes.idempotency.lease.
+     */
+    @Scheduled(fixedDelayString = "${notes.idempotency.renew-interval-ms:60000}")
+    public void renewLeases() {
+        List<Object[]> claims = claimed.entrySet().stream()
+                .map(claim -> new Object[]{Timestamp.valueOf(LocalDateTime.now()),
+                        claim.getKey().userId(), claim.getKey().key(), claim.getValue()})
+                .toList();
+        if (!claims.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE idempotency_keys SET renewed_at = ? "
+                    + "WHERE user_id = ? AND idempotency_key = ? AND created_at = ? AND response_status IS NULL", claims);
+        }
+    }
+
+    // null when the key is now ours (stamped claimedAt) and the write must run; otherwise the stored response
+    private Result claim(Key id, byte[] requestHash, InputStream body, Timestamp claimedAt) throws IOException {
+        LocalDateTime now = claimedAt.toLocalDateTime();
+        while (true) {
+            if (jdbcTemplate.update("INSERT INTO idempotency_keys (user_id, idempotency_key, request_hash, created_at) "
+                    + "VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING", id.userId(), id.key(), requestHash, claimedAt) == 1) {
+                return null;
+            }
+
+            List<Stored> rows = jdbcTemplate.query("SELECT request_hash, response_status, response_body, response_length, "
+                            + "created_at, renewed_at, body_hash, body_length, body_complete "
+                            + "FROM idempotency_keys WHERE user_id = ? AND idempotency_key = ?",
+                    (rs, row) -> new Stored(rs.getBytes(1), rs.getObject(2, Integer.class), rs.getBytes(3),
+                            rs.getObject(4, Integer.class), rs.getTimestamp(5), rs.getTimestamp(6), rs.getBytes(7),
+                            rs.getObject(8, Long.class), rs.getObject(9, Boolean.class)),
+                    id.userId(), id.key());
+            if (rows.isEmpty()) {
+                // Released or purged since the insert; claim it again
+                continue;
+            }
+            Stored stored = rows.get(0);
+            LocalDateTime createdAt = stored.createdAt().toLocalDateTime();
+            boolean expired = createdAt.isBefore(now.minus(ttl));
+            LocalDateTime renewedAt = stored.renewedAt() != null ? stored.renewedAt().toLocalDateTime() : createdAt;
+            boolean abandoned = stored.status() == null && renewedAt.isBefore(now.minus(lease));
+            if (expired || abandoned) {
+                // Only one of the requests racing for a stale row replaces it
+                if (jdbcTemplate.update("UPDATE idempotency_keys SET request_hash = ?, response_status = NULL, "
+                                + "response_body = NULL, response_length = NULL, body_hash = NULL, body_length = NULL, "
+                                + "body_complete = NULL, created_at = ?, renewed_at = NULL "
+                                + "WHERE user_id = ? AND idempotency_key = ? AND created_at = ?",
+                        requestHash, claimedAt, id.userId(), id.key(), stored.createdAt()) == 1) {
+                    return null;
+                }
+                continue;
+            }
+            if (!Arrays.equals(stored.requestHash(), requestHash)) {
+                throw new IdempotencyKeyMismatchException(id.key());
+            }
+            if (stored.status() == null) {
+                throw new IdempotencyKeyInUseException(id.key());
+            }
+            if (body != null && stored.bodyHash() != null && !sameBody(stored, body)) {
+                throw new IdempotencyKeyMismatchException(id.key());
+            }
+            String json = ContentCodec.decompress(ContentCodec.DEFLATE, stored.body(), stored.length());
+            return new Result(stored.status(), readTree(json), true);
+        }
+    }
+
+    /**
+     * The write and the storing of its response in one transaction, which the write joins: if
+     * either fails, or the claim was taken over meanwhile, neither is committed.
+     */
+    private Result runInTransaction(Key id, Timestamp claimedAt, Write<Result> write) throws Exception {
+        Exception[] failure = new Exception[1];
+        Result result;
+        try {
+            result = transactionTemplate.execute(status -> {
+                Result written;
+                try {
+                    written = write.run(null);
+                } catch (Exception e) {
+                    failure[0] = e;
+                    status.setRollbackOnly();
+                    return null;
+                }
+                if (!succeeded(written)) {
+                    status.setRollbackOnly();
+                } else if (!store(id, claimedAt, written, null)) {
+                    failure[0] = new IdempotencyKeyInUseException(id.key());
+                    status.setRollbackOnly();
+                }
+                return written;
+            });
+        } catch (RuntimeException e) {
+            release(id, claimedAt);
+            throw e;
+        }
+        if (failure[0] != null || !succeeded(result)) {
+            release(id, claimedAt);
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        return result;
+    }
+
+    // Imports commit batch by batch, so the write commits on its own and the response is stored after it
+    private Result run(Key id, Timestamp claimedAt, InputStream body, Write<Result> write) throws Exception {
+        HashingInputStream hashed = new HashingInputStream(body);
+        Result result;
+        try {
+            result = write.run(hashed);
+        } catch (Exception e) {
+            release(id, claimedAt);
+            throw e;
+        }
+        if (!succeeded(result)) {
+            release(id, claimedAt);
+            return result;
+        }
+        hashed.drain();
+        store(id, claimedAt, result, hashed);
+        return result;
+    }
+
+    // Checks the claim is still ours, in case it outlived the lease and was taken over
+    private boolean store(Key id, Timestamp claimedAt, Result result, HashingInputStream hashed) {
+        String json = writeJson(result.body());
+        return jdbcTemplate.update("UPDATE idempotency_keys SET response_status = ?, response_body = ?, "
+                        + "response_length = ?, body_hash = ?, body_length = ?, body_complete = ? "
+                        + "WHERE user_id = ? AND idempotency_key = ? AND created_at = ?",
+                result.status(), ContentCodec.compress(json), json.getBytes(StandardCharsets.UTF_8).length,
+                hashed != null ? hashed.digest() : null, hashed != null ? hashed.length() : null,
+                hashed != null ? hashed.complete() : null, id.userId(), id.key(), claimedAt) == 1;
+    }
+
+    private static boolean succeeded(Result result) {
+        return result.status() >= 200 && result.status() < 300;
+    }
+
+    private void release(Key id, Timestamp claimedAt) {
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE user_id = ? AND idempotency_key = ? AND created_at = ?",
+                id.userId(), id.key(), claimedAt);
+    }
+
+    // Followers get the leader's exception as is
+    private static Result join(CompletableFuture<Result> result) throws Exception {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private String writeJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Object readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Reads the retry's body up to the stored length, and one byte past it when the first body was complete
+    private static boolean sameBody(Stored stored, InputStream body) throws IOException {
+        HashingInputStream retry = new HashingInputStream(body);
+        byte[] buffer = new byte[64 * 1024];
+        long remaining = stored.bodyLength();
+        while (remaining > 0) {
+            int read = retry.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                return false;
+            }
+            remaining -= read;
+        }
+        if (Boolean.TRUE.equals(stored.bodyComplete()) && body.read() >= 0) {
+            return false;
+        }
+        return Arrays.equals(retry.digest(), stored.bodyHash());
+    }
+
+    private static byte[] sha256(String request) {
+        return sha256().digest(request.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // SHA-256 and length of the bytes read through it, and whether the end of the stream was reached
+    private static final class HashingInputStream extends FilterInputStream {
+
+        private final MessageDigest digest = sha256();
+        private long length;
+        private boolean complete;
+
+        HashingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) {
+                complete = true;
+            } else {
+                digest.update((byte) b);
+                length++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read < 0) {
+                complete = true;
+            } else {
+                digest.update(b, off, read);
+                length += read;
+            }
+            return read;
+        }
+
+        // Skipped bytes must be hashed too
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(8192, Math.max(n, 0))];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        // Whatever the write left unread (a zip's central directory, a gzip trailer), unless the client is gone
+        void drain() {
+            try {
+                transferTo(OutputStream.nullOutputStream());
+            } catch (IOException e) {
+                log.debug("Request body ended early: {}", e.getMessage());
+            }
+        }
+
+        byte[] digest() {
+            return digest.digest();
+        }
+
+        long length() {
+            return length;
+        }
+
+        boolean complete() {
+            return complete;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.ensolvers.notes.service;
+
+import com.ensolvers.notes.model.Note;
+import com.ensolvers.notes.model.NoteBody;
+import com.ensolvers.notes.repository.NoteBodyRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides where note content lives. Short content stays inline in notes.content; content
+ * longer than the threshold is stored compressed in note_bodies and notes.content keeps
+ * only a preview (contentTruncated = true), so list queries never read large bodies.
+ */
+@Service
+public class NoteContentStore {
+
+    private final NoteBodyRepository noteBodyRepository;
+
+    @Value("${notes.content.external-threshold:8192}")
+    private int externalThreshold;
+
+    @Value("${notes.content.preview-length:280}")
+    private int previewLength;
+
+    @Autowired
+    public NoteContentStore(NoteBodyRepository noteBodyRepository) {
+        this.noteBodyRepository = noteBodyRepository;
+    }
+
+    public boolean isExternal(String text) {
+        return text != null && text.length() > externalThreshold;
+    }
+
+    public String preview(String text) {
+        int end = previewLength;
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    public NoteBody encode(Long noteId, String text) {
+        return NoteBody.builder()
+                .noteId(noteId)
+                .codec(ContentCodec.DEFLATE)
+                .originalLength(text.getBytes(StandardCharsets.UTF_8).length)
+                .data(ContentCodec.compress(text))
+                .build();
+    }
+
+    /**
+     * Sets the note's content to text, moving it to or from note_bodies as needed. For a
+     * note not saved yet, call saveBody once it has an id if the content ended up truncated.
+     */
+    public void apply(Note note, String text) {
+        if (isExternal(text)) {
+            note.setContent(preview(text));
+            note.setContentTruncated(true);
+            if (note.getId() != null) {
+                saveBody(note.getId(), text);
+            }
+        } else {
+            if (note.isContentTruncated() && note.getId() != null) {
+                noteBodyRepository.deleteById(note.getId());
+            }
+            note.setContent(text);
+            note.setContentTruncated(false);
+        }
+    }
+
+    public void saveBody(Long noteId, String text) {
+        noteBodyRepository.save(encode(noteId, text));
+    }
+
+    /**
+     * Full content of the note, reading and decompressing its body if it has one.
+     */
+    public String load(Note note) {
+        if (!note.isContentTruncated()) {
+            return note.getContent();
+        }
+        NoteBodyRepository.StoredBody body = noteBodyRepository.findStoredBody(note.getId())
+                .orElseThrow(() -> new IllegalStateException("Missing body of note " + note.getId()));
+        return decode(body);
+    }
+
+    /**
+     * Full content of the truncated notes among the given ones, by note id, with their bodies
+     * read in one query.
+     */
+    public Map<Long, String> loadAll(Collection<Note> notes) {
+        List<Long> ids = notes.stream()
+                .filter(Note::isContentTruncated)
+                .map(Note::getId)
+                .toList();
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, String> contents = new HashMap<>();
+        noteBodyRepository.findStoredBodies(ids).forEach(body -> contents.put(body.getNoteId(), decode(body)));
+        return contents;
+    }
+
+    private static String decode(NoteBodyRepository.StoredBody body) {
+        return ContentCodec.decompress(body.getCodec(), body.getData(), body.getOriginalLength());
+    }
+
+    public void delete(Note note) {
+        if (note.isContentTruncated()) {
+            noteBodyRepository.deleteById(note.getId());
+        }
+    }
+}
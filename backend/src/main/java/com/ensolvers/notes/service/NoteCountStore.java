@@ -0,0 +1,222 @@
+package com.ensolvers.notes.service;
+
+import com.ensolvers.notes.dto.NoteStatsResponse;
+import com.ensolvers.notes.dto.NoteStatsResponse.TagCount;
+import com.ensolvers.notes.model.Note;
+import com.ensolvers.notes.model.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Number of active and archived notes per user, in total and per tag, kept in
+ * user_note_counts and user_tag_counts. Every note write applies its change to the counts
+ * in its own transaction, so reading them never scans notes; a scheduled reconciler
+ * recounts from the notes and corrects any drift.
+ */
+@Service
+public class NoteCountStore {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteCountStore.class);
+
+    private static final String UPDATE_TOTALS_SQL =
+            "UPDATE user_note_counts SET active_count = active_count + ?, archived_count = archived_count + ? "
+                    + "WHERE user_id = ?";
+    private static final String INSERT_TOTALS_SQL =
+            "INSERT INTO user_note_counts (user_id) VALUES (?) ON CONFLICT DO NOTHING";
+    private static final String UPDATE_TAG_SQL =
+            "UPDATE user_tag_counts SET active_count = active_count + ?, archived_count = archived_count + ? "
+                    + "WHERE user_id = ? AND tag_id = ?";
+    private static final String INSERT_TAG_SQL =
+            "INSERT INTO user_tag_counts (user_id, tag_id) VALUES (?, ?) ON CONFLICT DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public NoteCountStore(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * What a note adds to the counts: one to active or archived, in total and for each of its tags.
+     */
+    public record Snapshot(boolean archived, Set<Long> tagIds) {
+        public static Snapshot of(Note note) {
+            return new Snapshot(note.isArchived(),
+                    note.getTags().stream().map(Tag::getId).collect(Collectors.toSet()));
+        }
+    }
+
+    /**
+     * Applies a note going from before to after; null is "no note" (created or deleted).
+     * Must be called inside the transaction that writes the note.
+     */
+    public void noteChanged(Long userId, Snapshot before, Snapshot after) {
+        Change change = new Change();
+        if (before != null) {
+            change.add(before, -1);
+        }
+        if (after != null) {
+            change.add(after, 1);
+        }
+        apply(userId, change);
+    }
+
+    /**
+     * Applies many new notes at once, for bulk imports.
+     */
+    public void notesAdded(Long userId, Collection<Snapshot> notes) {
+        Change change = new Change();
+        notes.forEach(note -> change.add(note, 1));
+        apply(userId, change);
+    }
+
+    public NoteStatsResponse get(Long userId) {
+        NoteStatsResponse stats = new NoteStatsResponse();
+        jdbcTemplate.query("SELECT active_count, archived_count FROM user_note_counts WHERE user_id = ?", rs -> {
+            stats.setActive(rs.getLong(1));
+            stats.setArchived(rs.getLong(2));
+        }, userId);
+        stats.setTags(jdbcTemplate.query(
+                "SELECT c.tag_id, t.name, c.active_count, c.archived_count FROM user_tag_counts c "
+                        + "JOIN tags t ON t.id = c.tag_id "
+                        + "WHERE c.user_id = ? AND (c.active_count > 0 OR c.archived_count > 0) ORDER BY t.name",
+                (rs, row) -> new TagCount(rs.getLong(1), rs.getString(2), rs.getLong(3), rs.getLong(4)),
+                userId));
+        return stats;
+    }
+
+    /**
+     * Recounts every user's notes and overwrites counts that drifted, e.g. after notes were
+     * changed by hand in the database. One short transaction per user.
+     */
+    @Scheduled(initialDelayString = "${notes.stats.reconcile-interval-ms:3600000}",
+            fixedDelayString = "${notes.stats.reconcile-interval-ms:3600000}")
+    public void reconcile() {
+        int corrected = 0;
+        for (Long userId : jdbcTemplate.queryForList("SELECT id FROM users ORDER BY id", Long.class)) {
+            try {
+                if (reconcile(userId)) {
+                    corrected++;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not reconcile note counts of user {}: {}", userId, e.getMessage());
+            }
+        }
+        if (corrected > 0) {
+            log.warn("Corrected drifted note counts of {} users", corrected);
+        }
+    }
+
+    /**
+     * Recounts one user's notes; returns whether any count was wrong.
+     */
+    public boolean reconcile(Long userId) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> recount(userId)));
+    }
+
+    private boolean recount(Long userId) {
+        // Locking the totals row first waits out writers that already changed the counts; writers
+        // that come later wait for this transaction and then add to the corrected values
+        jdbcTemplate.update(INSERT_TOTALS_SQL, userId);
+        long[] storedTotals = jdbcTemplate.queryForObject(
+                "SELECT active_count, archived_count FROM user_note_counts WHERE user_id = ? FOR UPDATE",
+                (rs, row) -> new long[]{rs.getLong(1), rs.getLong(2)}, userId);
+
+        long[] totals = new long[2];
+        jdbcTemplate.query("SELECT archived, COUNT(*) FROM notes WHERE user_id = ? GROUP BY archived",
+                rs -> {
+                    totals[rs.getBoolean(1) ? 1 : 0] = rs.getLong(2);
+                }, userId);
+        Map<Long, long[]> tags = new HashMap<>();
+        jdbcTemplate.query("SELECT nt.tag_id, n.archived, COUNT(*) FROM notes n "
+                        + "JOIN note_tags nt ON nt.note_id = n.id WHERE n.user_id = ? GROUP BY nt.tag_id, n.archived",
+                rs -> {
+                    tags.computeIfAbsent(rs.getLong(1), id -> new long[2])[rs.getBoolean(2) ? 1 : 0] = rs.getLong(3);
+                }, userId);
+        Map<Long, long[]> storedTags = new HashMap<>();
+        jdbcTemplate.query("SELECT tag_id, active_count, archived_count FROM user_tag_counts WHERE user_id = ?",
+                rs -> {
+                    storedTags.put(rs.getLong(1), new long[]{rs.getLong(2), rs.getLong(3)});
+                }, userId);
+
+        boolean drifted = false;
+        if (!Arrays.equals(storedTotals, totals)) {
+            jdbcTemplate.update("UPDATE user_note_counts SET active_count = ?, archived_count = ? WHERE user_id = ?",
+                    totals[0], totals[1], userId);
+            drifted = true;
+        }
+        for (Map.Entry<Long, long[]> stored : storedTags.entrySet()) {
+            long[] actual = tags.getOrDefault(stored.getKey(), new long[2]);
+            if (!Arrays.equals(stored.getValue(), actual)) {
+                jdbcTemplate.update(UPDATE_TAG_SQL, actual[0] - stored.getValue()[0],
+                        actual[1] - stored.getValue()[1], userId, stored.getKey());
+                drifted = true;
+            }
+        }
+        for (Map.Entry<Long, long[]> actual : tags.entrySet()) {
+            if (!storedTags.containsKey(actual.getKey())) {
+                increment(UPDATE_TAG_SQL, INSERT_TAG_SQL, actual.getValue(), userId, actual.getKey());
+                drifted = true;
+            }
+        }
+        // Tags the user no longer has any notes with
+        jdbcTemplate.update("DELETE FROM user_tag_counts WHERE user_id = ? AND active_count = 0 AND archived_count = 0",
+                userId);
+        return drifted;
+    }
+
+    // The totals row is updated first even when only tags changed, so writers of the same user
+    // and the reconciler queue up on it; tag rows follow in id order so writers never deadlock
+    private void apply(Long userId, Change change) {
+        if (change.isEmpty()) {
+            return;
+        }
+        increment(UPDATE_TOTALS_SQL, INSERT_TOTALS_SQL, change.totals, userId);
+        change.tags.forEach((tagId, counts) -> {
+            if (counts[0] != 0 || counts[1] != 0) {
+                increment(UPDATE_TAG_SQL, INSERT_TAG_SQL, counts, userId, tagId);
+            }
+        });
+    }
+
+    // A row missing for a new user or tag is created, then incremented like any other
+    private void increment(String updateSql, String insertSql, long[] counts, Object... key) {
+        Object[] args = new Object[key.length + 2];
+        args[0] = counts[0];
+        args[1] = counts[1];
+        System.arraycopy(key, 0, args, 2, key.length);
+        if (jdbcTemplate.update(updateSql, args) == 0) {
+            jdbcTemplate.update(insertSql, key);
+            jdbcTemplate.update(updateSql, args);
+        }
+    }
+
+    // Net change to [active, archived], in total and per tag
+    private static class Change {
+        private final long[] totals = new long[2];
+        private final SortedMap<Long, long[]> tags = new TreeMap<>();
+
+        void add(Snapshot note, int sign) {
+            int column = note.archived() ? 1 : 0;
+            totals[column] += sign;
+            for (Long tagId : note.tagIds()) {
+                tags.computeIfAbsent(tagId, id -> new long[2])[column] += sign;
+            }
+        }
+
+        boolean isEmpty() {
+            return totals[0] == 0 && totals[1] == 0
+                    && tags.values().stream().allMatch(counts -> counts[0] == 0 && counts[1] == 0);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.ensolvers.notes.service;
+
+import com.ensolvers.notes.dto.NoteChangeEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process fan-out of note changes to the users' open Server-Sent Events streams.
+ * Each subscriber gets a bounded buffer drained by its own virtual thread, so idle
+ * connections only cost a parked virtual thread and a slow client never blocks writers.
+ */
+@Service
+public class NoteEventBus {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteEventBus.class);
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ThreadFactory pumpThreads = Thread.ofVirtual().name("note-stream-", 0).factory();
+
+    @Value("${notes.stream.buffer-size:64}")
+    private int bufferSize;
+
+    @Value("${notes.stream.heartbeat-interval:15s}")
+    private Duration heartbeatInterval;
+
+    @Value("${notes.stream.timeout:30m}")
+    private Duration timeout;
+
+    /**
+     * Opens a change stream for the given user. The emitter completes on timeout,
+     * on client disconnect or on shutdown; clients are expected to reconnect.
+     */
+    public SseEmitter openStream(Long userId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(userId, emitter);
+
+        subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+
+        pumpThreads.newThread(subscriber::pump).start();
+        return emitter;
+    }
+
+    /**
+     * Delivers an event to every open stream of the user without blocking the caller.
+     */
+    public void publish(Long userId, NoteChangeEvent event) {
+        Set<Subscriber> userSubscribers = subscribers.get(userId);
+        if (userSubscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : userSubscribers) {
+            subscriber.offer(event);
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        subscribers.values().forEach(set -> set.forEach(s -> s.emitter.complete()));
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.userId, (id, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private final class Subscriber {
+
+        // Wakes up the pump so it can exit after the subscriber was closed
+        private static final NoteChangeEvent CLOSED = new NoteChangeEvent();
+
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<NoteChangeEvent> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private volatile boolean closed;
+
+        private Subscriber(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        private void offer(NoteChangeEvent event) {
+            if (buffer.offer(event)) {
+                return;
+            }
+            // The client is too slow: drop what it has not read yet and ask it to refetch
+            buffer.clear();
+            buffer.offer(NoteChangeEvent.builder().type(NoteChangeEvent.Type.RESYNC).build());
+        }
+
+        private void pump() {
+            try {
+                emitter.send(SseEmitter.event().comment("connected"));
+                while (!closed) {
+                    NoteChangeEvent event = buffer.poll(heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+                    if (event == null) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else if (event != CLOSED) {
+                        emitter.send(SseEmitter.event().name(event.getType().name()).data(event));
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Note stream for user {} closed: {}", userId, e.getMessage());
+                emitter.completeWithError(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                emitter.complete();
+            } finally {
+                close();
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            remove(this);
+            buffer.clear();
+            buffer.offer(CLOSED);
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.ensolvers.notes.service;
+
+import com.ensolvers.notes.dto.NoteChangeEvent;
+import com.ensolvers.notes.dto.NoteExportRecord;
+import com.ensolvers.notes.dto.NoteImportResult;
+import com.ensolvers.notes.dto.NoteImportResult.ImportError;
+import com.ensolvers.notes.model.NoteBody;
+import com.ensolvers.notes.model.Tag;
+import com.ensolvers.notes.model.User;
+import com.ensolvers.notes.repository.TagRepository;
+import com.ensolvers.notes.service.NoteCountStore.Snapshot;
+import com.ensolvers.notes.service.invalidation.Invalidation;
+import com.ensolvers.notes.service.invalidation.InvalidationBus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Bulk import of notes. Input is parsed incrementally and notes are inserted in large
+ * JDBC batches, each batch in its own transaction with all its tags resolved in one query.
+ */
+@Service
+public class NoteImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteImportService.class);
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    // VARCHAR(255) of notes.title and tags.name
+    private static final int MAX_TITLE_LENGTH = 255;
+    private static final int MAX_TAG_NAME_LENGTH = 255;
+
+    private static final String INSERT_NOTE_SQL =
+            "INSERT INTO notes (title, content, content_truncated, archived, created_at, updated_at, user_id, version) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, 0)";
+    private static final String INSERT_NOTE_TAG_SQL =
+            "INSERT INTO note_tags (note_id, tag_id) VALUES (?, ?)";
+    private static final String INSERT_NOTE_BODY_SQL =
+            "INSERT INTO note_bodies (note_id, codec, original_length, data) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TagRepository tagRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final NoteEventBus noteEventBus;
+    private final InvalidationBus invalidationBus;
+    private final NoteContentStore noteContentStore;
+    private final NoteCountStore noteCountStore;
+    private final ObjectReader recordReader;
+
+    // Longer NDJSON lines and larger zip entries are reported as failed instead of read into memory
+    @Value("${notes.import.max-line-size:1MB}")
+    private DataSize maxLineSize;
+
+    @Value("${notes.import.max-entry-size:1MB}")
+    private DataSize maxEntrySize;
+
+    @Autowired
+    public NoteImportService(JdbcTemplate jdbcTemplate, TagRepository tagRepository,
+                             TransactionTemplate transactionTemplate, NoteEventBus noteEventBus,
+                             InvalidationBus invalidationBus, NoteContentStore noteContentStore,
+                             NoteCountStore noteCountStore, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tagRepository = tagRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.noteEventBus = noteEventBus;
+        this.invalidationBus = invalidationBus;
+        this.noteContentStore = noteContentStore;
+        this.noteCountStore = noteCountStore;
+        this.recordReader = objectMapper.readerFor(NoteExportRecord.class);
+    }
+
+    // One note waiting in the current batch, with where it came from for error reporting
+    private record PendingNote(Long line, String entry, String title, String content, boolean archived,
+                               LocalDateTime createdAt, Set<String> tagNames) {
+    }
+
+    /**
+     * Imports newline-delimited JSON in the export format; id and version are ignored.
+     * Lines that cannot be parsed, have no title or a title or tag that is too long are
+     * reported and skipped.
+     */
+    public NoteImportResult importNdjson(User user, InputStream in) throws IOException {
+        NoteImportResult result = new NoteImportResult();
+        List<PendingNote> batch = new ArrayList<>(BATCH_SIZE);
+
+        LineReader reader = new LineReader(in, (int) maxLineSize.toBytes());
+        String line;
+        long lineNumber = 0;
+        try {
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (reader.truncated()) {
+                    reject(result, lineNumber, null,
+                            "Line exceeds the maximum size of " + maxLineSize.toBytes() + " bytes");
+                    continue;
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    NoteExportRecord record = recordReader.readValue(line);
+                    batch.add(toPendingNote(lineNumber, null, record.getTitle(), record.getContent(),
+                            record.isArchived(), record.getCreatedAt(), record.getTags()));
+                } catch (Exception e) {
+                    reject(result, lineNumber, null, e.getMessage());
+                    continue;
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    insertBatch(user, batch, result);
+                }
+            }
+        } catch (IOException e) {
+            interrupted(user, result, lineNumber, null, e);
+        }
+        insertBatch(user, batch, result);
+
+        notifyImported(user, result);
+        return result;
+    }
+
+    /**
+     * Imports a zip of Markdown files. The title is the first "# " heading (or the file
+     * name) and the folders the file is in become its tags.
+     */
+    public NoteImportResult importMarkdownZip(User user, InputStream in) throws IOException {
+        NoteImportResult result = new NoteImportResult();
+        List<PendingNote> batch = new ArrayList<>(BATCH_SIZE);
+
+        ZipInputStream zip = new ZipInputStream(in, StandardCharsets.UTF_8);
+        ZipEntry entry;
+        String lastEntry = null;
+        try {
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (entry.isDirectory() || !(name.endsWith(".md") || name.endsWith(".markdown"))) {
+                    continue;
+                }
+                // The rest of an oversized entry is skipped by the next getNextEntry
+                byte[] data = zip.readNBytes((int) maxEntrySize.toBytes() + 1);
+                lastEntry = name;
+                if (data.length > maxEntrySize.toBytes()) {
+                    reject(result, null, name, "Entry exceeds the maximum size of " + maxEntrySize.toBytes() + " bytes");
+                    continue;
+                }
+                try {
+                    batch.add(fromMarkdown(name, new String(data, StandardCharsets.UTF_8)));
+                } catch (Exception e) {
+                    reject(result, null, name, e.getMessage());
+                    continue;
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    insertBatch(user, batch, result);
+                }
+            }
+        } catch (IOException e) {
+            interrupted(user, result, null, lastEntry, e);
+        }
+        insertBatch(user, batch, result);
+
+        notifyImported(user, result);
+        return result;
+    }
+
+    private PendingNote fromMarkdown(String entryName, String text) {
+        String[] path = entryName.split("/");
+        String fileName = path[path.length - 1];
+        String title = fileName.substring(0, fileName.lastIndexOf('.'));
+        String content = text;
+
+        if (text.startsWith("# ")) {
+            int lineEnd = text.indexOf('\n');
+            title = (lineEnd < 0 ? text.substring(2) : text.substring(2, lineEnd)).trim();
+            content = lineEnd < 0 ? "" : text.substring(lineEnd + 1).stripLeading();
+        }
+
+        List<String> folders = Arrays.asList(path).subList(0, path.length - 1);
+        return toPendingNote(null, entryName, title, content, false, null, folders);
+    }
+
+    private PendingNote toPendingNote(Long line, String entry, String title, String content, boolean archived,
+                                      LocalDateTime createdAt, List<String> tagNames) {
+        if (title == null || title.isBlank()) {
+            throw new IllegalArgumentException("Title is required");
+        }
+        if (title.length() > MAX_TITLE_LENGTH) {
+            throw new IllegalArgumentException("Title exceeds " + MAX_TITLE_LENGTH + " characters");
+        }
+        Set<String> tags = tagNames == null ? Set.of() : tagNames.stream()
+                .filter(Objects::nonNull)
+                .filter(name -> !name.isBlank())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        for (String tag : tags) {
+            if (tag.length() > MAX_TAG_NAME_LENGTH) {
+                throw new IllegalArgumentException("Tag name exceeds " + MAX_TAG_NAME_LENGTH + " characters");
+            }
+        }
+        return new PendingNote(line, entry, title, content, archived,
+                createdAt != null ? createdAt : LocalDateTime.now(), tags);
+    }
+
+    // A failed batch is retried one note at a time, so only the notes the database refuses are rejected
+    private void insertBatch(User user, List<PendingNote> batch, NoteImportResult result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            insertNotes(user, batch);
+            result.setImported(result.getImported() + batch.size());
+        } catch (RuntimeException e) {
+            log.warn("Import batch of {} notes for user {} failed, inserting them one by one: {}",
+                    batch.size(), user.getId(), e.getMessage());
+            for (PendingNote note : batch) {
+                try {
+                    insertNotes(user, List.of(note));
+                    result.setImported(result.getImported() + 1);
+                } catch (RuntimeException noteError) {
+                    reject(result, note.line(), note.entry(), "Insert failed: " + noteError.getMessage());
+                }
+            }
+        }
+        batch.clear();
+    }
+
+    private void insertNotes(User user, List<PendingNote> notes) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, Long> tagIds = resolveTagIds(notes);
+            List<Long> noteIds = insertNoteRows(user, notes);
+            insertNoteBodies(notes, noteIds);
+            insertNoteTags(notes, noteIds, tagIds);
+            noteCountStore.notesAdded(user.getId(), notes.stream()
+                    .map(note -> new Snapshot(note.archived(),
+                            note.tagNames().stream().map(tagIds::get).collect(Collectors.toSet())))
+                    .toList());
+        });
+    }
+
+    private Map<String, Long> resolveTagIds(List<PendingNote> batch) {
+        Set<String> names = batch.stream()
+                .flatMap(note -> note.tagNames().stream())
+                .collect(Collectors.toSet());
+        if (names.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<String, Long> tagIds = new HashMap<>();
+        tagRepository.findByNameIn(names).forEach(tag -> tagIds.put(tag.getName(), tag.getId()));
+
+        List<Tag> missing = names.stream()
+                .filter(name -> !tagIds.containsKey(name))
+                .map(name -> Tag.builder().name(name).build())
+                .toList();
+        tagRepository.saveAll(missing).forEach(tag -> {
+            tagIds.put(tag.getName(), tag.getId());
+            invalidationBus.publish(Invalidation.tag(tag.getId()));
+        });
+        tagRepository.flush();
+        return tagIds;
+    }
+
+    private List<Long> insertNoteRows(User user, List<PendingNote> batch) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_NOTE_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        PendingNote note = batch.get(i);
+                        boolean external = noteContentStore.isExternal(note.content());
+                        ps.setString(1, note.title());
+                        ps.setString(2, external ? noteContentStore.preview(note.content()) : note.content());
+                        ps.setBoolean(3, external);
+                        ps.setBoolean(4, note.archived());
+                        ps.setTimestamp(5, Timestamp.valueOf(note.createdAt()));
+                        ps.setTimestamp(6, Timestamp.valueOf(note.createdAt()));
+                        ps.setLong(7, user.getId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return batch.size();
+                    }
+                }, keys);
+
+        // Key column names differ in case between databases, so take the single key value
+        return keys.getKeyList().stream()
+                .map(row -> ((Number) row.values().iterator().next()).longValue())
+                .toList();
+    }
+
+    // Large notes were inserted with a preview only; their compressed bodies go here
+    private void insertNoteBodies(List<PendingNote> batch, List<Long> noteIds) {
+        List<NoteBody> bodies = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (noteContentStore.isExternal(batch.get(i).content())) {
+                bodies.add(noteContentStore.encode(noteIds.get(i), batch.get(i).content()));
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_NOTE_BODY_SQL, bodies, BATCH_SIZE, (ps, body) -> {
+            ps.setLong(1, body.getNoteId());
+            ps.setString(2, body.getCodec());
+            ps.setInt(3, body.getOriginalLength());
+            ps.setBytes(4, body.getData());
+        });
+    }
+
+    private void insertNoteTags(List<PendingNote> batch, List<Long> noteIds, Map<String, Long> tagIds) {
+        List<long[]> rows = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            for (String tagName : batch.get(i).tagNames()) {
+                rows.add(new long[]{noteIds.get(i), tagIds.get(tagName)});
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_NOTE_TAG_SQL, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setLong(1, row[0]);
+            ps.setLong(2, row[1]);
+        });
+    }
+
+    /**
+     * The input broke off (client gone, truncated gzip or zip). With no batch committed yet the
+     * import just fails; committed batches are not undone, so otherwise the notes read so far
+     * are imported and the result says where the input stopped, to be stored and replayed for an
+     * Idempotency-Key like any other result.
+     */
+    private void interrupted(User user, NoteImportResult result, Long line, String entry, IOException e)
+            throws IOException {
+        if (result.getImported() == 0) {
+            throw e;
+        }
+        log.warn("Import for user {} broke off after {} notes: {}", user.getId(), result.getImported(), e.getMessage());
+        result.setInterrupted(new ImportError(line, entry, "Input ended unexpectedly: " + e.getMessage()));
+    }
+
+    private void reject(NoteImportResult result, Long line, String entry, String error) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+            result.getErrors().add(new ImportError(line, entry, error));
+        }
+    }
+
+    // One event for the whole import instead of one per note; clients refetch their lists
+    private void notifyImported(User user, NoteImportResult result) {
+        if (result.getImported() > 0) {
+            invalidationBus.publish(Invalidation.notes(user.getId(), null));
+            noteEventBus.publish(user.getId(),
+                    NoteChangeEvent.builder().type(NoteChangeEvent.Type.RESYNC).build());
+        }
+    }
+
+    /**
+     * Reads UTF-8 lines like BufferedReader.readLine, but keeps at most maxBytes of each line:
+     * the rest of a longer line is skipped up to its end and the line is marked truncated.
+     */
+    private static final class LineReader {
+
+        private final InputStream in;
+        private final int maxBytes;
+        private final byte[] buffer = new byte[64 * 1024];
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private int position;
+        private int limit;
+        private boolean truncated;
+
+        LineReader(InputStream in, int maxBytes) {
+            this.in = in;
+            this.maxBytes = maxBytes;
+        }
+
+        // The next line without its \n or \r\n, or null at the end of the input
+        String readLine() throws IOException {
+            line.reset();
+            truncated = false;
+            boolean read = false;
+            while (true) {
+                if (position == limit) {
+                    limit = in.read(buffer);
+                    position = 0;
+                    if (limit < 0) {
+                        limit = 0;
+                        return read ? decode() : null;
+                    }
+                }
+                read = true;
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                int kept = Math.min(position - start, maxBytes - line.size());
+                line.write(buffer, start, kept);
+                truncated |= kept < position - start;
+                if (position < limit) {
+                    position++;
+                    return decode();
+                }
+            }
+        }
+
+        boolean truncated() {
+            return truncated;
+        }
+
+        private String decode() {
+            String text = line.toString(StandardCharsets.UTF_8);
+            return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+        }
+    }
+}
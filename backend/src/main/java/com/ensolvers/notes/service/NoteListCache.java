@@ -0,0 +1,187 @@
+package com.ensolvers.notes.service;
+
+import com.ensolvers.notes.config.ResponseFormats;
+import com.ensolvers.notes.model.Note;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import com.ensolvers.notes.service.invalidation.Invalidation;
+import com.ensolvers.notes.service.invalidation.InvalidationBus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the serialized active/archived note lists of each user, one entry per response
+ * format (JSON, CBOR, Smile) actually requested, weighted by their size in bytes. Every write
+ * to a user's notes bumps the user's generation; a list loaded under an older generation is
+ * never stored, so a read racing with a write cannot cache stale data.
+ * Invalidations arrive through the InvalidationBus, so writes on other nodes count as well.
+ * <p>
+ * Concurrent misses for the same list and generation share a single load (single flight).
+ * A write bumps the generation, so readers arriving after it start a load of their own
+ * instead of joining one that may have read the database before the write.
+ */
+@Component
+public class NoteListCache {
+
+    private record Key(Long userId, boolean archived, MediaType format) {
+    }
+
+    private record Entry(long generation, byte[] body) {
+    }
+
+    private record Flight(Long userId, boolean archived, MediaType format, long generation) {
+    }
+
+    private final ResponseFormats responseFormats;
+    private final Cache<Key, Entry> cache;
+    private final Map<Long, Long> generations = new ConcurrentHashMap<>();
+    private final Map<Flight, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    // Bumped when everything is dropped; part of every user's generation
+    private final AtomicLong epoch = new AtomicLong();
+
+    @Value("${notes.list-cache.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    public NoteListCache(ResponseFormats responseFormats, MeterRegistry meterRegistry, InvalidationBus invalidationBus,
+                         @Value("${notes.list-cache.max-size:64MB}") DataSize maxSize,
+                         @Value("${notes.list-cache.expire-after-access:10m}") Duration expireAfterAccess) {
+        this.responseFormats = responseFormats;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((Key key, Entry entry) -> entry.body().length)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "notes.list");
+        this.coalesced = Counter.builder("notes.list.coalesced")
+                .description("List reads answered by another request's in-flight load")
+                .register(meterRegistry);
+        invalidationBus.subscribe(this::onInvalidation);
+    }
+
+    public byte[] get(Long userId, boolean archived, Supplier<List<Note>> loader) {
+        return get(userId, archived, MediaType.APPLICATION_JSON, loader);
+    }
+
+    /**
+     * Returns the user's list in the given format, from the cache, from a load already in
+     * progress or by serializing what the loader returns. Single flight applies even with
+     * caching disabled.
+     */
+    public byte[] get(Long userId, boolean archived, MediaType format, Supplier<List<Note>> loader) {
+        Key key = new Key(userId, archived, format);
+        long generation = generation(userId);
+
+        if (enabled) {
+            Entry entry = cache.getIfPresent(key);
+            if (entry != null && entry.generation() == generation) {
+                return entry.body();
+            }
+        }
+
+        Flight flight = new Flight(userId, archived, format, generation);
+        CompletableFuture<byte[]> load = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = inFlight.putIfAbsent(flight, load);
+        if (running != null) {
+            coalesced.increment();
+            return join(running);
+        }
+
+        try {
+            byte[] body = serialize(loader.get(), format);
+            load.complete(body);
+            if (enabled && generation(userId) == generation) {
+                cache.asMap().merge(key, new Entry(generation, body),
+                        (current, loaded) -> current.generation() >= loaded.generation() ? current : loaded);
+            }
+            return body;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flight, load);
+        }
+    }
+
+    private void onInvalidation(Invalidation invalidation) {
+        switch (invalidation.kind()) {
+            case NOTES -> invalidate(invalidation.id());
+            case ALL -> {
+                epoch.incrementAndGet();
+                cache.invalidateAll();
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Drops the user's cached lists. Inside a transaction the generation is bumped again after
+     * completion, so a list read before the commit is not kept either.
+     */
+    private void invalidate(Long userId) {
+        bump(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    bump(userId);
+                }
+            });
+        }
+    }
+
+    private long generation(Long userId) {
+        return epoch.get() + generations.getOrDefault(userId, 0L);
+    }
+
+    private void bump(Long userId) {
+        generations.merge(userId, 1L, Long::sum);
+        for (MediaType format : responseFormats.all()) {
+            cache.invalidate(new Key(userId, false, format));
+            cache.invalidate(new Key(userId, true, format));
+        }
+    }
+
+    // The followers get the leader's exception as is
+    private static byte[] join(CompletableFuture<byte[]> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private byte[] serialize(List<Note> notes, MediaType format) {
+        try {
+            return responseFormats.mapper(format).writeValueAsBytes(notes);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
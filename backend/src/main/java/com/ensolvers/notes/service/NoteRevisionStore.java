@@ -0,0 +1,122 @@
+package com.ensolvers.notes.service;
+
+import com.ensolvers.notes.dto.ContentEditRequest.Splice;
+import com.ensolvers.notes.dto.NoteRevisionResponse;
+import com.ensolvers.notes.model.Note;
+import com.ensolvers.notes.model.NoteRevision;
+import com.ensolvers.notes.repository.NoteRevisionRepository;
+import com.ensolvers.notes.repository.NoteRevisionRepository.RevisionSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Revision history of notes. Revisions 1, 1 + interval, 1 + 2 * interval... are compressed
+ * snapshots of the content; every other revision stores only the splice from the revision
+ * before it. Rebuilding any revision reads at most snapshot-interval rows in one range query.
+ */
+@Service
+public class NoteRevisionStore {
+
+    private final NoteRevisionRepository noteRevisionRepository;
+
+    @Value("${notes.revisions.snapshot-interval:20}")
+    private int snapshotInterval;
+
+    @Autowired
+    public NoteRevisionStore(NoteRevisionRepository noteRevisionRepository) {
+        this.noteRevisionRepository = noteRevisionRepository;
+    }
+
+    /**
+     * Records the note's current title and the given content as a new revision, unless
+     * neither changed. previousTitle is null for a note that was just created; otherwise,
+     * for a note with no history yet (created before revisions were kept), its previous
+     * version is recorded first as revision 1.
+     */
+    public void record(Note note, String previousTitle, String previousContent, String content) {
+        String before = Objects.requireNonNullElse(previousContent, "");
+        String after = Objects.requireNonNullElse(content, "");
+        if (previousTitle != null && previousTitle.equals(note.getTitle()) && before.equals(after)) {
+            return;
+        }
+
+        Integer latest = noteRevisionRepository.findLatestRevision(note.getId());
+        if (latest == null) {
+            if (previousTitle == null) {
+                save(note.getId(), 1, note.getTitle(), null, after, LocalDateTime.now());
+                return;
+            }
+            save(note.getId(), 1, previousTitle, null, before, note.getCreatedAt());
+            latest = 1;
+        }
+        save(note.getId(), latest + 1, note.getTitle(), before, after, LocalDateTime.now());
+    }
+
+    public List<RevisionSummary> list(Long noteId) {
+        return noteRevisionRepository.findByNoteIdOrderByRevisionDesc(noteId);
+    }
+
+    /**
+     * Rebuilds a revision from the closest snapshot at or before it.
+     */
+    public NoteRevisionResponse get(Long noteId, int revision) {
+        int base = revision - Math.floorMod(revision - 1, snapshotInterval);
+        List<NoteRevision> chain = noteRevisionRepository.findByNoteIdAndRevisionBetweenOrderByRevision(
+                noteId, base, revision);
+        if (chain.isEmpty() || chain.get(chain.size() - 1).getRevision() != revision || !chain.get(0).isSnapshot()) {
+            throw new RuntimeException("Revision not found");
+        }
+
+        String content = null;
+        for (NoteRevision step : chain) {
+            String payload = ContentCodec.decompress(step.getCodec(), step.getData(), step.getOriginalLength());
+            content = step.isSnapshot() ? payload : ContentDelta.apply(content, List.of(decodeSplice(payload)));
+        }
+        NoteRevision last = chain.get(chain.size() - 1);
+        return NoteRevisionResponse.builder()
+                .noteId(noteId)
+                .revision(revision)
+                .title(last.getTitle())
+                .content(content)
+                .createdAt(last.getCreatedAt())
+                .build();
+    }
+
+    public void delete(Long noteId) {
+        noteRevisionRepository.deleteByNoteId(noteId);
+    }
+
+    private void save(Long noteId, int revision, String title, String before, String after, LocalDateTime createdAt) {
+        boolean snapshot = (revision - 1) % snapshotInterval == 0;
+        String payload = snapshot ? after : encodeSplice(ContentDelta.diff(before, after));
+        noteRevisionRepository.save(NoteRevision.builder()
+                .noteId(noteId)
+                .revision(revision)
+                .title(title)
+                .snapshot(snapshot)
+                .codec(ContentCodec.DEFLATE)
+                .originalLength(payload.getBytes(StandardCharsets.UTF_8).length)
+                .data(ContentCodec.compress(payload))
+                .createdAt(createdAt)
+                .build());
+    }
+
+    // "offset,deleteCount,insert"
+    private static String encodeSplice(Splice splice) {
+        return splice.getOffset() + "," + splice.getDeleteCount() + "," + splice.getInsert();
+    }
+
+    private static Splice decodeSplice(String payload) {
+        int first = payload.indexOf(',');
+        int second = payload.indexOf(',', first + 1);
+        return new Splice(Integer.parseInt(payload.substring(0, first)),
+                Integer.parseInt(payload.substring(first + 1, second)),
+                payload.substring(second + 1));
+    }
+}
@@ -1,16 +1,57 @@
 package com.ensolvers.notes.service;
 
+import com.ensolvers.notes.dto.ContentEditRequest;
+import com.ensolvers.notes.dto.NoteChangeEvent;
+import com.ensolvers.notes.dto.NoteFields;
+import com.ensolvers.notes.dto.NoteListRequest;
+import com.ensolvers.notes.dto.NoteRevisionResponse;
+import com.ensolvers.notes.dto.NoteStatsResponse;
+import com.ensolvers.notes.exception.ContentHashMismatchException;
+import com.ensolvers.notes.exception.NoteVersionConflictException;
+import com.ensolvers.notes.exception.ServiceOverloadedException;
 import com.ensolvers.notes.model.Note;
 import com.ensolvers.notes.model.Tag;
 import com.ensolvers.notes.model.User;
 import com.ensolvers.notes.repository.NoteRepository;
+import com.ensolvers.notes.repository.NoteRevisionRepository.RevisionSummary;
 import com.ensolvers.notes.repository.TagRepository;
+import com.ensolvers.notes.service.NoteCountStore.Snapshot;
+import com.ensolvers.notes.service.NoteWriteBuffer.PendingWrite;
+import com.ensolvers.notes.service.invalidation.Invalidation;
+import com.ensolvers.notes.service.invalidation.InvalidationBus;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Handles operations related to notes.
@@ -18,81 +59,577 @@ import java.util.Set;
 @Service
 public class NoteService {
 
+    private static final Logger log = LoggerFactory.getLogger(NoteService.class);
+
+    private static final Set<String> SORT_PROPERTIES = Set.of("id", "title", "createdAt", "updatedAt");
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int VIEW_BATCH_SIZE = 500;
+    // Open ends of the createdAt filter, so the page query has no optional conditions
+    private static final LocalDateTime MIN_CREATED_AT = LocalDateTime.of(1, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_CREATED_AT = LocalDateTime.of(9999, 12, 31, 0, 0);
+
     private final NoteRepository noteRepository;
     private final TagRepository tagRepository;
+    private final NoteEventBus noteEventBus;
+    private final NoteWriteBuffer noteWriteBuffer;
+    private final NoteListCache noteListCache;
+    private final NoteContentStore noteContentStore;
+    private final NoteRevisionStore noteRevisionStore;
+    private final NoteCountStore noteCountStore;
+    private final AttachmentService attachmentService;
+    private final InvalidationBus invalidationBus;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final EntityManager entityManager;
+
+    // Opt-in: buffer autosave PUTs and write only the latest version of each note
+    @Value("${notes.autosave.coalescing.enabled:false}")
+    private boolean coalescingEnabled;
+
+    // A buffered update whose flush keeps failing on transient errors is dropped after this many tries
+    @Value("${notes.autosave.max-flush-attempts:5}")
+    private int maxFlushAttempts;
 
     @Autowired
-    public NoteService(NoteRepository noteRepository, TagRepository tagRepository) {
+    public NoteService(NoteRepository noteRepository, TagRepository tagRepository, NoteEventBus noteEventBus,
+                       NoteWriteBuffer noteWriteBuffer, NoteListCache noteListCache, NoteContentStore noteContentStore,
+                       NoteRevisionStore noteRevisionStore, NoteCountStore noteCountStore,
+                       AttachmentService attachmentService,
+                       InvalidationBus invalidationBus, TransactionTemplate transactionTemplate,
+                       EntityManager entityManager) {
         this.noteRepository = noteRepository;
         this.tagRepository = tagRepository;
+        this.noteEventBus = noteEventBus;
+        this.noteWriteBuffer = noteWriteBuffer;
+        this.noteListCache = noteListCache;
+        this.noteContentStore = noteContentStore;
+        this.noteRevisionStore = noteRevisionStore;
+        this.noteCountStore = noteCountStore;
+        this.attachmentService = attachmentService;
+        this.invalidationBus = invalidationBus;
+        this.transactionTemplate = transactionTemplate;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Active or archived notes of the user already serialized as an array in the given
+     * format, served from NoteListCache when the list has not changed since it was last rendered.
+     */
+    public byte[] getNoteList(User user, boolean archived, MediaType format) {
+        noteWriteBuffer.flushUser(user.getId(), this::writePending);
+        return noteListCache.get(user.getId(), archived, format,
+                () -> noteRepository.findByUserAndArchived(user, archived));
+    }
+
+    /**
+     * One page of the user's active or archived notes, sorted and filtered by creation time
+     * as asked. Ties are broken by id in the same direction, so every sort is a walk over one
+     * of the (user_id, column, id) indexes and pages never overlap.
+     */
+    public Slice<Note> findNotes(User user, boolean archived, NoteListRequest request) {
+        noteWriteBuffer.flushUser(user.getId(), this::writePending);
+        return readOnlyTransactionTemplate.execute(status -> {
+            Slice<Long> ids = findIdPage(user, archived, request);
+            Map<Long, Note> notes = noteRepository.findByIdIn(ids.getContent()).stream()
+                    .collect(Collectors.toMap(Note::getId, note -> note));
+            return ids.map(notes::get);
+        });
+    }
+
+    /**
+     * Same page as findNotes, reading only the columns of the given fields.
+     */
+    public Slice<Map<String, Object>> findNoteViews(User user, boolean archived, NoteListRequest request,
+                                                    NoteFields fields) {
+        noteWriteBuffer.flushUser(user.getId(), this::writePending);
+        return readOnlyTransactionTemplate.execute(status -> {
+            Slice<Long> ids = findIdPage(user, archived, request);
+            List<Map<String, Object>> views = new ArrayList<>(noteRepository.findFieldsByIdIn(ids.getContent(), fields));
+            addTags(views, fields);
+            Map<Object, Map<String, Object>> byId = views.stream()
+                    .collect(Collectors.toMap(view -> view.get("id"), view -> view));
+            return ids.map(byId::get);
+        });
+    }
+
+    /**
+     * The user's active or archived notes reduced to the given fields, reading only their
+     * columns. Not cached, unlike the full list: narrow views are cheap to read.
+     */
+    public List<Map<String, Object>> getNoteViews(User user, boolean archived, NoteFields fields) {
+        List<Map<String, Object>> views = new ArrayList<>();
+        forEachNoteView(user, archived, fields, views::add);
+        return views;
+    }
+
+    /**
+     * Streaming counterpart of getNoteViews; tags, when asked for, are read once per batch of notes.
+     */
+    public void forEachNoteView(User user, boolean archived, NoteFields fields, Consumer<Map<String, Object>> action) {
+        noteWriteBuffer.flushUser(user.getId(), this::writePending);
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            List<Map<String, Object>> batch = new ArrayList<>(VIEW_BATCH_SIZE);
+            try (Stream<Map<String, Object>> views = noteRepository.streamFields(user, archived, fields)) {
+                views.forEach(view -> {
+                    batch.add(view);
+                    if (batch.size() == VIEW_BATCH_SIZE) {
+                        emitViews(batch, fields, action);
+                    }
+                });
+            }
+            emitViews(batch, fields, action);
+        });
+    }
+
+    // Called inside a transaction
+    private Slice<Long> findIdPage(User user, boolean archived, NoteListRequest request) {
+        String sort = request.getSort() == null ? "id" : request.getSort();
+        Sort.Direction direction = sort.startsWith("-") ? Sort.Direction.DESC : Sort.Direction.ASC;
+        String property = sort.startsWith("-") ? sort.substring(1) : sort;
+        if (!SORT_PROPERTIES.contains(property)) {
+            throw new RuntimeException("Invalid sort: " + sort);
+        }
+        Sort order = property.equals("id")
+                ? Sort.by(direction, "id")
+                : Sort.by(direction, property, "id");
+        Pageable pageable = PageRequest.of(
+                request.getPage() == null ? 0 : request.getPage(),
+                request.getSize() == null ? DEFAULT_PAGE_SIZE : request.getSize(),
+                order);
+        LocalDateTime createdFrom = request.getCreatedFrom() == null ? MIN_CREATED_AT : request.getCreatedFrom();
+        LocalDateTime createdTo = request.getCreatedTo() == null ? MAX_CREATED_AT : request.getCreatedTo();
+        return noteRepository.findIdPage(user, archived, createdFrom, createdTo, pageable);
+    }
+
+    private void emitViews(List<Map<String, Object>> batch, NoteFields fields, Consumer<Map<String, Object>> action) {
+        addTags(batch, fields);
+        batch.forEach(action);
+        batch.clear();
+        // The tags read for this batch; they are already in the views
+        entityManager.clear();
+    }
+
+    private void addTags(List<Map<String, Object>> views, NoteFields fields) {
+        if (!fields.contains(NoteFields.Field.TAGS) || views.isEmpty()) {
+            return;
+        }
+        Map<Long, List<Tag>> tags = noteRepository.findTagsByNoteIdIn(
+                views.stream().map(view -> (Long) view.get("id")).toList());
+        views.forEach(view -> view.put("tags", tags.getOrDefault((Long) view.get("id"), List.of())));
+    }
+
+    /**
+     * Active and archived note counts of the user, in total and per tag, from the maintained counters.
+     */
+    public NoteStatsResponse getStats(User user) {
+        // Buffered updates can change tags, so they are written first like for any other read
+        noteWriteBuffer.flushUser(user.getId(), this::writePending);
+        return noteCountStore.get(user.getId());
+    }
+
+    /**
+     * Hands the user's notes to the action one at a time straight from a database cursor,
+     * detaching them in batches so memory use does not grow with the number of notes. The
+     * tags of each batch are read in one query.
+     */
+    public void forEachNote(User user, boolean archived, Consumer<Note> action) {
+        streamNotes(user, () -> noteRepository.streamByUserAndArchived(user, archived), false, action);
+    }
+
+    /**
+     * Same as above for all the user's notes, active and archived, with their full content
+     * (the bodies of each batch are read in one query too). The read-only transaction takes
+     * no row locks, so a long export does not block the user's writes.
+     */
+    public void forEachNote(User user, Consumer<Note> action) {
+        streamNotes(user, () -> noteRepository.streamByUser(user), true, action);
     }
 
-    public List<Note> getActiveNotes(User user) {
-        return noteRepository.findByUserAndArchived(user, false);
+    /**
+     * The note with its full content, even when lists only carry a preview of it. The
+     * returned note is detached, so the full text is never written back inline.
+     */
+    public Note getNote(Long noteId, User user) {
+        return getNote(noteId, user, NoteFields.parse(null));
     }
 
-    public List<Note> getArchivedNotes(User user) {
-        return noteRepository.findByUserAndArchived(user, true);
+    /**
+     * Same as above, skipping the full content and the tags when they are not among the fields.
+     */
+    public Note getNote(Long noteId, User user, NoteFields fields) {
+        // Before the read-only transaction: a buffered write flushed inside it would not be written
+        noteWriteBuffer.flush(noteId, user.getId(), this::writePending);
+        return readOnlyTransactionTemplate.execute(status -> {
+            Note note = findOwnedNote(noteId, user, null);
+            boolean withContent = fields.contains(NoteFields.Field.CONTENT);
+            String content = withContent ? noteContentStore.load(note) : null;
+            if (fields.contains(NoteFields.Field.TAGS)) {
+                Hibernate.initialize(note.getTags());
+            }
+
+            entityManager.detach(note);
+            if (withContent) {
+                note.setContent(content);
+                note.setContentTruncated(false);
+            }
+            return note;
+        });
+    }
+
+    /**
+     * Full content of a note read through forEachNote; must be called inside the callback.
+     * Notes from the export variant already have it, so this reads nothing for them.
+     */
+    public String getFullContent(Note note) {
+        return noteContentStore.load(note);
     }
 
+    @Transactional
     public Note createNote(User user, String title, String content, List<String> tagNames) {
         Note note = new Note();
         note.setUser(user);
         note.setTitle(title);
-        note.setContent(content);
+        noteContentStore.apply(note, content);
+        note.setTags(resolveTags(tagNames));
 
-        Set<Tag> tags = new HashSet<>();
-        if (tagNames != null) {
-            for (String tagName : tagNames) {
-                Tag tag = tagRepository.findByName(tagName)
-                        .orElseGet(() -> tagRepository.save(new Tag(null, tagName, new HashSet<>())));
-                tags.add(tag);
-            }
+        Note saved = noteRepository.save(note);
+        if (saved.isContentTruncated()) {
+            noteContentStore.saveBody(saved.getId(), content);
         }
-        note.setTags(tags);
-
-        return noteRepository.save(note);
+        noteRevisionStore.record(saved, null, null, content);
+        noteCountStore.noteChanged(user.getId(), null, Snapshot.of(saved));
+        publish(user, NoteChangeEvent.Type.CREATED, saved.getId());
+        return saved;
     }
 
+    /*
+     * The writes below flush the note's buffered update before opening their transaction, as
+     * getNote does: the buffered update commits on its own, so a write that fails afterwards
+     * (Unauthorized, version conflict...) cannot roll back an update that was already answered.
+     */
+
     public Note toggleArchiveStatus(Long noteId, User user) {
+        noteWriteBuffer.flush(noteId, user.getId(), this::writePending);
+        return transactionTemplate.execute(status -> {
+            Note note = findOwnedNote(noteId, user, null);
+            Snapshot before = Snapshot.of(note);
+            note.setArchived(!note.isArchived());
+            Note saved = noteRepository.save(note);
+            noteCountStore.noteChanged(user.getId(), before, Snapshot.of(saved));
+            publish(user, saved.isArchived() ? NoteChangeEvent.Type.ARCHIVED : NoteChangeEvent.Type.UNARCHIVED, noteId);
+            return saved;
+        });
+    }
+
+    public Note updateNote(Long noteId, User user, String title, String content, List<String> tagNames) {
+        return updateNote(noteId, user, null, title, content, tagNames);
+    }
+
+    /**
+     * Replaces title, content and tags of a note. When expectedVersion is given the
+     * update is rejected if the note was modified since the client read it.
+     */
+    public Note updateNote(Long noteId, User user, Long expectedVersion, String title, String content, List<String> tagNames) {
+        if (coalescingEnabled && expectedVersion == null) {
+            return stageUpdate(noteId, user, title, content, tagNames);
+        }
+        noteWriteBuffer.flush(noteId, user.getId(), this::writePending);
+        return transactionTemplate.execute(status -> {
+            Note note = findOwnedNote(noteId, user, expectedVersion);
+
+            edit(note, title, content);
+            syncTags(note, resolveTags(tagNames));
+
+            Note saved = noteRepository.save(note);
+            publish(user, NoteChangeEvent.Type.UPDATED, noteId);
+            return saved;
+        });
+    }
+
+    /**
+     * Applies only the fields that were sent; null means "unchanged". Combined with
+     * dynamic updates on Note, untouched columns and note_tags rows are not rewritten.
+     */
+    public Note patchNote(Long noteId, User user, Long expectedVersion, String title, String content, List<String> tagNames) {
+        noteWriteBuffer.flush(noteId, user.getId(), this::writePending);
+        return transactionTemplate.execute(status -> {
+            Note note = findOwnedNote(noteId, user, expectedVersion);
+
+            if (title != null || content != null) {
+                edit(note, title, content);
+            }
+            if (tagNames != null) {
+                syncTags(note, resolveTags(tagNames));
+            }
+
+            Note saved = noteRepository.save(note);
+            publish(user, NoteChangeEvent.Type.UPDATED, noteId);
+            return saved;
+        });
+    }
+
+    /**
+     * Applies text splices to the content of the note at baseVersion. The result must hash
+     * to contentHash, otherwise nothing is written and the client should resend the full content.
+     */
+    public Note applyContentEdits(Long noteId, User user, ContentEditRequest request) {
+        noteWriteBuffer.flush(noteId, user.getId(), this::writePending);
+        return transactionTemplate.execute(status -> {
+            Note note = findOwnedNote(noteId, user, request.getBaseVersion());
+
+            String previousContent = noteContentStore.load(note);
+            String content = ContentDelta.apply(previousContent, request.getEdits());
+            if (!ContentDelta.hash(content).equalsIgnoreCase(request.getContentHash())) {
+                throw new ContentHashMismatchException(noteId);
+            }
+            edit(note, previousContent, null, content);
+
+            Note saved = noteRepository.save(note);
+            publish(user, NoteChangeEvent.Type.UPDATED, noteId);
+            return saved;
+        });
+    }
+
+    @Transactional
+    public void deleteNoteById(Long noteId, User user) {
         Note note = noteRepository.findById(noteId)
                 .orElseThrow(() -> new RuntimeException("Note not found"));
         if (!note.getUser().getId().equals(user.getId())) {
             throw new RuntimeException("Unauthorized");
         }
-        note.setArchived(!note.isArchived());
-        return noteRepository.save(note);
+        noteWriteBuffer.discard(noteId);
+        noteCountStore.noteChanged(user.getId(), Snapshot.of(note), null);
+        noteContentStore.delete(note);
+        noteRevisionStore.delete(noteId);
+        attachmentService.deleteForNote(noteId);
+        noteRepository.deleteById(noteId);
+        publish(user, NoteChangeEvent.Type.DELETED, noteId);
     }
 
-    public Note updateNote(Long noteId, User user, String title, String content, List<String> tagNames) {
+    /**
+     * Revisions of an owned note, newest first, without their content.
+     */
+    public List<RevisionSummary> getRevisions(Long noteId, User user) {
+        // A buffered update is a revision too, so it is written first, as for getRevision
+        noteWriteBuffer.flush(noteId, user.getId(), this::writePending);
+        return readOnlyTransactionTemplate.execute(status -> {
+            findOwnedNote(noteId, user, null);
+            return noteRevisionStore.list(noteId);
+        });
+    }
+
+    public NoteRevisionResponse getRevision(Long noteId, int revision, User user) {
+        noteWriteBuffer.flush(noteId, user.getId(), this::writePending);
+        return readOnlyTransactionTemplate.execute(status -> {
+            findOwnedNote(noteId, user, null);
+            return noteRevisionStore.get(noteId, revision);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${notes.autosave.flush-interval-ms:2000}")
+    public void flushPendingWrites() {
+        if (!noteWriteBuffer.isEmpty()) {
+            noteWriteBuffer.flushAll(this::tryWritePending);
+        }
+    }
+
+    @PreDestroy
+    public void flushPendingWritesOnShutdown() {
+        noteWriteBuffer.flushAll(this::tryWritePending);
+    }
+
+    private void streamNotes(User user, Supplier<Stream<Note>> query, boolean fullContent, Consumer<Note> action) {
+        noteWriteBuffer.flushUser(user.getId(), this::writePending);
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            List<Note> batch = new ArrayList<>(VIEW_BATCH_SIZE);
+            try (Stream<Note> notes = query.get()) {
+                notes.forEach(note -> {
+                    batch.add(note);
+                    if (batch.size() == VIEW_BATCH_SIZE) {
+                        emitNotes(batch, fullContent, action);
+                    }
+                });
+            }
+            emitNotes(batch, fullContent, action);
+        });
+    }
+
+    // Detached before they are filled in, so neither the tags nor the full content can be written back
+    private void emitNotes(List<Note> batch, boolean fullContent, Consumer<Note> action) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<Long, List<Tag>> tags = noteRepository.findTagsByNoteIdIn(batch.stream().map(Note::getId).toList());
+        Map<Long, String> contents = fullContent ? noteContentStore.loadAll(batch) : Map.of();
+        entityManager.clear();
+        for (Note note : batch) {
+            note.setTags(new HashSet<>(tags.getOrDefault(note.getId(), List.of())));
+            String content = contents.get(note.getId());
+            if (content != null) {
+                note.setContent(content);
+                note.setContentTruncated(false);
+            }
+            action.accept(note);
+        }
+        batch.clear();
+    }
+
+    // Under the note's flush lock, so the version read here cannot be overtaken by a flush in progress
+    private Note stageUpdate(Long noteId, User user, String title, String content, List<String> tagNames) {
+        return noteWriteBuffer.locked(noteId, () -> transactionTemplate.execute(status -> {
+            Note current = findOwnedNote(noteId, user, null);
+            Set<Tag> tags = resolveTags(tagNames);
+            noteWriteBuffer.stage(new PendingWrite(noteId, user.getId(), title, content, tagNames));
+
+            // Answer with the note as it will look once flushed, without touching the managed entity.
+            // A flush bumps the version exactly once however many updates it coalesces (see
+            // writePending), so the version, and with it the ETag, is the one the note will have.
+            return Note.builder()
+                    .id(noteId)
+                    .title(title)
+                    .content(content)
+                    .archived(current.isArchived())
+                    .createdAt(current.getCreatedAt())
+                    .version(current.getVersion() + 1)
+                    .user(current.getUser())
+                    .tags(tags)
+                    .build();
+        }));
+    }
+
+    // For requests that read or write the note next: they must not go on without the buffered update
+    private void writePending(PendingWrite write) {
+        if (!tryWritePending(write)) {
+            throw new ServiceOverloadedException("Could not save the pending changes of the note, try again", 1);
+        }
+    }
+
+    /**
+     * Writes the buffered update. On a transient failure (lost connection, lock or pool
+     * timeout) it goes back into the buffer for the next flush, up to maxFlushAttempts, and
+     * false is returned; any other failure is permanent and the update is dropped.
+     */
+    private boolean tryWritePending(PendingWrite write) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    noteRepository.findById(write.noteId()).ifPresent(note -> {
+                        edit(note, write.title(), write.content());
+                        syncTags(note, resolveTags(write.tagNames()));
+                        // Always dirty, so the version goes up by one even if nothing else changed
+                        note.setUpdatedAt(LocalDateTime.now());
+                        noteRepository.save(note);
+                    }));
+            afterCommit(() -> {
+                invalidationBus.publish(Invalidation.notes(write.userId(), write.noteId()));
+                noteEventBus.publish(write.userId(),
+                        NoteChangeEvent.builder().type(NoteChangeEvent.Type.UPDATED).noteId(write.noteId()).build());
+            });
+            return true;
+        } catch (RuntimeException e) {
+            if (!isTransient(e)) {
+                log.warn("Dropping buffered update of note {}: {}", write.noteId(), e.getMessage());
+                return true;
+            }
+            PendingWrite failed = write.failed();
+            if (failed.failedAttempts() >= maxFlushAttempts) {
+                log.error("Dropping buffered update of note {} after {} failed flushes: {}",
+                        write.noteId(), failed.failedAttempts(), e.getMessage());
+                return true;
+            }
+            log.warn("Buffered update of note {} requeued after a failed flush: {}", write.noteId(), e.getMessage());
+            noteWriteBuffer.requeue(failed);
+            return false;
+        }
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    private void edit(Note note, String title, String content) {
+        edit(note, noteContentStore.load(note), title, content);
+    }
+
+    // Sets title and content (null keeps the current value) and adds a revision if either changed
+    private void edit(Note note, String previousContent, String title, String content) {
+        // Concurrent edits of the note wait here, so each numbers its revision after the one before
+        // commits. The loser's stale version then fails at flush, a 409, not a revision key clash
+        noteRepository.lockById(note.getId());
+        String previousTitle = note.getTitle();
+        if (title != null) {
+            note.setTitle(title);
+        }
+        if (content != null) {
+            noteContentStore.apply(note, content);
+        }
+        noteRevisionStore.record(note, previousTitle, previousContent, content != null ? content : previousContent);
+    }
+
+    private Note findOwnedNote(Long noteId, User user, Long expectedVersion) {
         Note note = noteRepository.findById(noteId)
                 .orElseThrow(() -> new RuntimeException("Note not found"));
         if (!note.getUser().getId().equals(user.getId())) {
             throw new RuntimeException("Unauthorized");
         }
-        
-        note.setTitle(title);
-        note.setContent(content);
-        
+        if (expectedVersion != null && !expectedVersion.equals(note.getVersion())) {
+            throw new NoteVersionConflictException(noteId, expectedVersion, note.getVersion());
+        }
+        return note;
+    }
+
+    private Set<Tag> resolveTags(List<String> tagNames) {
         Set<Tag> tags = new HashSet<>();
         if (tagNames != null) {
             for (String tagName : tagNames) {
-                Tag tag = tagRepository.findByName(tagName)
-                        .orElseGet(() -> tagRepository.save(new Tag(null, tagName, new HashSet<>())));
+                Tag tag = tagRepository.findByName(tagName).orElseGet(() -> {
+                    Tag created = tagRepository.save(new Tag(null, tagName, new HashSet<>()));
+                    afterCommit(() -> invalidationBus.publish(Invalidation.tag(created.getId())));
+                    return created;
+                });
                 tags.add(tag);
             }
         }
-        note.setTags(tags);
-        
-        return noteRepository.save(note);
+        return tags;
     }
 
-    public void deleteNoteById(Long noteId, User user) {
-        Note note = noteRepository.findById(noteId)
-                .orElseThrow(() -> new RuntimeException("Note not found"));
-        if (!note.getUser().getId().equals(user.getId())) {
-            throw new RuntimeException("Unauthorized");
+    // Mutates the managed collection in place so Hibernate only deletes/inserts the changed note_tags rows
+    private void syncTags(Note note, Set<Tag> tags) {
+        Snapshot before = Snapshot.of(note);
+        Set<Long> wantedIds = tags.stream().map(Tag::getId).collect(Collectors.toSet());
+        note.getTags().removeIf(tag -> !wantedIds.contains(tag.getId()));
+        Set<Long> currentIds = note.getTags().stream().map(Tag::getId).collect(Collectors.toSet());
+        tags.stream()
+                .filter(tag -> !currentIds.contains(tag.getId()))
+                .forEach(note.getTags()::add);
+        noteCountStore.noteChanged(note.getUser().getId(), before, Snapshot.of(note));
+    }
+
+    // Every write goes through here, so it is also where the caches holding the note are invalidated.
+    // Sent once the write commits: clients and other nodes reacting to them must read the new state
+    private void publish(User user, NoteChangeEvent.Type type, Long noteId) {
+        Long userId = user.getId();
+        afterCommit(() -> {
+            invalidationBus.publish(Invalidation.notes(userId, noteId));
+            noteEventBus.publish(userId, NoteChangeEvent.builder().type(type).noteId(noteId).build());
+        });
+    }
+
+    // Nothing is sent for a write that rolls back; outside a transaction the action runs right away
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
         }
-        noteRepository.deleteById(noteId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 }
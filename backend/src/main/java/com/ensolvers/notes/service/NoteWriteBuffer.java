@@ -0,0 +1,124 @@
+package com.ensolvers.notes.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Write-combining buffer for autosave updates: keeps only the latest pending
+ * full update per note until NoteService flushes it to the database.
+ */
+@Component
+public class NoteWriteBuffer {
+
+    /**
+     * Latest full update (PUT semantics) requested for a note, with the number of flushes
+     * that already failed on it.
+     */
+    public record PendingWrite(Long noteId, Long userId, String title, String content, List<String> tagNames,
+                               int failedAttempts) {
+
+        public PendingWrite(Long noteId, Long userId, String title, String content, List<String> tagNames) {
+            this(noteId, userId, title, content, tagNames, 0);
+        }
+
+        public PendingWrite failed() {
+            return new PendingWrite(noteId, userId, title, content, tagNames, failedAttempts + 1);
+        }
+    }
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final Map<Long, PendingWrite> pending = new ConcurrentHashMap<>();
+
+    // Serializes flushes of the same note so an older write can never commit after a newer one
+    private final ReentrantLock[] flushLocks = new ReentrantLock[LOCK_STRIPES];
+
+    public NoteWriteBuffer() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            flushLocks[i] = new ReentrantLock();
+        }
+    }
+
+    public void stage(PendingWrite write) {
+        pending.put(write.noteId(), write);
+    }
+
+    /**
+     * Puts back a write whose flush failed, unless a newer update of the note was staged meanwhile.
+     */
+    public void requeue(PendingWrite write) {
+        pending.putIfAbsent(write.noteId(), write);
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Hands the pending write of the note, if any, to the writer and removes it from the buffer.
+     */
+    public void flush(Long noteId, Consumer<PendingWrite> writer) {
+        flush(noteId, null, writer);
+    }
+
+    /**
+     * Same as above, only when the pending write was staged by the given user, so a request
+     * for someone else's note never writes the owner's buffered update.
+     */
+    public void flush(Long noteId, Long userId, Consumer<PendingWrite> writer) {
+        locked(noteId, () -> {
+            PendingWrite write = pending.get(noteId);
+            if (write != null && (userId == null || userId.equals(write.userId()))) {
+                pending.remove(noteId);
+                writer.accept(write);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs the action holding the note's flush lock: nothing of the note is flushed meanwhile.
+     */
+    public <T> T locked(Long noteId, Supplier<T> action) {
+        ReentrantLock lock = flushLocks[Math.floorMod(noteId.hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void flushUser(Long userId, Consumer<PendingWrite> writer) {
+        for (Long noteId : pendingNoteIds(userId)) {
+            flush(noteId, writer);
+        }
+    }
+
+    public void flushAll(Consumer<PendingWrite> writer) {
+        for (Long noteId : pendingNoteIds(null)) {
+            flush(noteId, writer);
+        }
+    }
+
+    public void discard(Long noteId) {
+        pending.remove(noteId);
+    }
+
+    private List<Long> pendingNoteIds(Long userId) {
+        List<Long> noteIds = new ArrayList<>();
+        pending.forEach((noteId, write) -> {
+            if (userId == null || userId.equals(write.userId())) {
+                noteIds.add(noteId);
+            }
+        });
+        return noteIds;
+    }
+}
@@ -2,6 +2,8 @@ package com.ensolvers.notes.service;
 
 import com.ensolvers.notes.model.Tag;
 import com.ensolvers.notes.repository.TagRepository;
+import com.ensolvers.notes.service.invalidation.Invalidation;
+import com.ensolvers.notes.service.invalidation.InvalidationBus;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
@@ -16,10 +18,12 @@ import java.util.Objects;
 public class TagService {
 
     private final TagRepository tagRepository;
+    private final InvalidationBus invalidationBus;
 
     @Autowired
-    public TagService(TagRepository tagRepository) {
+    public TagService(TagRepository tagRepository, InvalidationBus invalidationBus) {
         this.tagRepository = tagRepository;
+        this.invalidationBus = invalidationBus;
     }
 
     public List<Tag> findAll() {
@@ -34,6 +38,7 @@ public class TagService {
         }
         Tag newTag = Tag.builder().name(tagName).build();
         Tag persisted = tagRepository.save(Objects.requireNonNull(newTag));
+        invalidationBus.publish(Invalidation.tag(persisted.getId()));
         return persisted;
     }
 
@@ -44,6 +49,7 @@ public class TagService {
         }
         try {
             tagRepository.deleteById(tagId);
+            invalidationBus.publish(Invalidation.tag(tagId));
         } catch (DataIntegrityViolationException e) {
             throw new RuntimeException("No se puede borrar el tag ya que tiene notas asociadas");
         }
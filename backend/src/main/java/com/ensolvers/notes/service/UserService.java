@@ -2,8 +2,9 @@ package com.ensolvers.notes.service;
 
 import com.ensolvers.notes.model.User;
 import com.ensolvers.notes.repository.UserRepository;
+import com.ensolvers.notes.service.invalidation.Invalidation;
+import com.ensolvers.notes.service.invalidation.InvalidationBus;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
@@ -15,11 +16,15 @@ import java.util.Optional;
 public class UserService {
 
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final PasswordHashingService passwordHashingService;
+    private final InvalidationBus invalidationBus;
 
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, PasswordHashingService passwordHashingService,
+                       InvalidationBus invalidationBus) {
         this.userRepository = userRepository;
+        this.passwordHashingService = passwordHashingService;
+        this.invalidationBus = invalidationBus;
     }
 
     public User registerUser(String username, String password) {
@@ -28,8 +33,11 @@ public class UserService {
         }
         User user = new User();
         user.setUsername(username);
-        user.setPassword(passwordEncoder.encode(password));
-        return userRepository.save(user);
+        user.setPassword(passwordHashingService.encode(password));
+        User saved = userRepository.save(user);
+        // Other nodes may have cached that the username did not exist
+        invalidationBus.publish(Invalidation.user(saved.getId()));
+        return saved;
     }
 
     public Optional<User> findByUsername(String username) {
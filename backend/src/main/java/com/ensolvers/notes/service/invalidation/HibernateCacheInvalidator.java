@@ -0,0 +1,48 @@
+package com.ensolvers.notes.service.invalidation;
+
+import com.ensolvers.notes.config.HibernateCacheConfig;
+import com.ensolvers.notes.model.Note;
+import com.ensolvers.notes.model.Tag;
+import com.ensolvers.notes.model.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Evicts second-level cache entries named by invalidations. Hibernate keeps its own node's
+ * cache consistent; this is what keeps the other nodes' copies from going stale.
+ */
+@Component
+public class HibernateCacheInvalidator {
+
+    private static final String NOTE_TAGS_ROLE = Note.class.getName() + ".tags";
+
+    private final Cache cache;
+
+    @Autowired
+    public HibernateCacheInvalidator(EntityManagerFactory entityManagerFactory, InvalidationBus invalidationBus) {
+        this.cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        invalidationBus.subscribe(this::evict);
+    }
+
+    private void evict(Invalidation invalidation) {
+        switch (invalidation.kind()) {
+            case NOTES -> {
+                if (invalidation.noteId() != null) {
+                    cache.evictCollectionData(NOTE_TAGS_ROLE, invalidation.noteId());
+                }
+            }
+            case USER -> {
+                cache.evictEntityData(User.class, invalidation.id());
+                cache.evictQueryRegion(HibernateCacheConfig.USER_QUERIES_REGION);
+            }
+            case TAG -> {
+                cache.evictEntityData(Tag.class, invalidation.id());
+                cache.evictQueryRegion(HibernateCacheConfig.TAG_QUERIES_REGION);
+            }
+            case ALL -> cache.evictAllRegions();
+        }
+    }
+}
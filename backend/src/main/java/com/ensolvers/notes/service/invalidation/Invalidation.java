@@ -0,0 +1,57 @@
+package com.ensolvers.notes.service.invalidation;
+
+/**
+ * Something cached that changed and must be dropped on every node.
+ *
+ * @param kind   what changed
+ * @param id     user id for NOTES and USER, tag id for TAG, null for ALL
+ * @param noteId the note that changed for NOTES, if a single one did
+ */
+public record Invalidation(Kind kind, Long id, Long noteId) {
+
+    public enum Kind {
+        // A user's notes changed: their cached lists and the note's tag collection
+        NOTES,
+        USER,
+        TAG,
+        // Messages may have been lost: drop everything
+        ALL
+    }
+
+    public static Invalidation notes(Long userId, Long noteId) {
+        return new Invalidation(Kind.NOTES, userId, noteId);
+    }
+
+    public static Invalidation user(Long userId) {
+        return new Invalidation(Kind.USER, userId, null);
+    }
+
+    public static Invalidation tag(Long tagId) {
+        return new Invalidation(Kind.TAG, tagId, null);
+    }
+
+    public static Invalidation all() {
+        return new Invalidation(Kind.ALL, null, null);
+    }
+
+    // Compact wire form used in NOTIFY payloads, e.g. "N:12:345", "U:3", "T:7", "A"
+    String encode() {
+        return switch (kind) {
+            case NOTES -> "N:" + id + ":" + (noteId != null ? noteId : "");
+            case USER -> "U:" + id;
+            case TAG -> "T:" + id;
+            case ALL -> "A";
+        };
+    }
+
+    static Invalidation decode(String value) {
+        String[] parts = value.split(":", -1);
+        return switch (parts[0]) {
+            case "N" -> notes(Long.valueOf(parts[1]), parts[2].isEmpty() ? null : Long.valueOf(parts[2]));
+            case "U" -> user(Long.valueOf(parts[1]));
+            case "T" -> tag(Long.valueOf(parts[1]));
+            case "A" -> all();
+            default -> throw new IllegalArgumentException("Unknown invalidation: " + value);
+        };
+    }
+}
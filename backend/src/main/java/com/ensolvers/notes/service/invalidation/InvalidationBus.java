@@ -0,0 +1,15 @@
+package com.ensolvers.notes.service.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * Fans out cache invalidations to every node running the application. Publishing always
+ * delivers to the local listeners right away, in the caller's thread; other nodes get it
+ * once the caller's transaction (if any) has committed.
+ */
+public interface InvalidationBus {
+
+    void publish(Invalidation invalidation);
+
+    void subscribe(Consumer<Invalidation> listener);
+}
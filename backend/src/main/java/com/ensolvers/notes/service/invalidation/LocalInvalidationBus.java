@@ -0,0 +1,35 @@
+package com.ensolvers.notes.service.invalidation;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Single-node bus: invalidations only reach the listeners of this JVM. Used in tests and
+ * when only one instance is running.
+ */
+@Component
+@ConditionalOnProperty(name = "notes.invalidation.bus", havingValue = "local", matchIfMissing = true)
+public class LocalInvalidationBus implements InvalidationBus {
+
+    private final List<Consumer<Invalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(Invalidation invalidation) {
+        deliver(listeners, invalidation);
+    }
+
+    @Override
+    public void subscribe(Consumer<Invalidation> listener) {
+        listeners.add(listener);
+    }
+
+    static void deliver(List<Consumer<Invalidation>> listeners, Invalidation invalidation) {
+        for (Consumer<Invalidation> listener : listeners) {
+            listener.accept(invalidation);
+        }
+    }
+}
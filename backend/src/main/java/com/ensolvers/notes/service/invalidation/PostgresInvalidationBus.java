@@ -0,0 +1,206 @@
+package com.ensolvers.notes.service.invalidation;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Invalidation bus over PostgreSQL LISTEN/NOTIFY. Invalidations are queued after commit and
+ * sent in batches, one NOTIFY per batch. Each node numbers its messages; a receiver that
+ * sees a gap in a node's numbering, or that had to reconnect, cannot know what it missed
+ * and drops all its caches instead.
+ */
+@Component
+@ConditionalOnProperty(name = "notes.invalidation.bus", havingValue = "postgres")
+public class PostgresInvalidationBus implements InvalidationBus {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresInvalidationBus.class);
+
+    // NOTIFY payloads are limited to 8000 bytes; the entries are ASCII
+    private static final int MAX_ENTRIES_LENGTH = 7900;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final List<Consumer<Invalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    // Pending invalidations; a set so that repeated writes by one user are sent once per batch
+    private final Set<Invalidation> outbox = ConcurrentHashMap.newKeySet();
+    private long sequence;
+
+    // Last message number seen from each other node; only used by the listener thread
+    private final Map<String, Long> lastSeen = new HashMap<>();
+
+    private volatile boolean running;
+
+    @Value("${notes.invalidation.channel:notes_invalidation}")
+    private String channel;
+
+    @Value("${notes.invalidation.reconnect-delay:5s}")
+    private Duration reconnectDelay;
+
+    @Autowired
+    public PostgresInvalidationBus(JdbcTemplate jdbcTemplate, DataSourceProperties dataSourceProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalStateException("Invalid notification channel: " + channel);
+        }
+        running = true;
+        Thread.ofVirtual().name("invalidation-listener").start(this::listen);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        flushOutbox();
+    }
+
+    @Override
+    public void publish(Invalidation invalidation) {
+        LocalInvalidationBus.deliver(listeners, invalidation);
+
+        // Other nodes must not reload before the change is visible to them
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    outbox.add(invalidation);
+                }
+            });
+        } else {
+            outbox.add(invalidation);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<Invalidation> listener) {
+        listeners.add(listener);
+    }
+
+    @Scheduled(fixedDelayString = "${notes.invalidation.batch-interval-ms:50}")
+    public synchronized void flushOutbox() {
+        if (outbox.isEmpty()) {
+            return;
+        }
+        List<Invalidation> batch = new ArrayList<>();
+        for (Iterator<Invalidation> it = outbox.iterator(); it.hasNext(); ) {
+            batch.add(it.next());
+            it.remove();
+        }
+
+        StringBuilder entries = new StringBuilder();
+        List<Invalidation> inPayload = new ArrayList<>();
+        for (Invalidation invalidation : batch) {
+            String entry = invalidation.encode();
+            if (entries.length() + entry.length() + 1 > MAX_ENTRIES_LENGTH) {
+                send(entries.toString(), inPayload);
+                entries.setLength(0);
+                inPayload.clear();
+            }
+            entries.append(entries.isEmpty() ? "" : ",").append(entry);
+            inPayload.add(invalidation);
+        }
+        send(entries.toString(), inPayload);
+    }
+
+    private void send(String entries, List<Invalidation> invalidations) {
+        String payload = nodeId + "|" + (sequence + 1) + "|" + entries;
+        try {
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, channel, payload);
+            sequence++;
+        } catch (DataAccessException e) {
+            // Not numbered yet, so receivers see no gap; retried with the next batch
+            log.warn("Could not send {} cache invalidations: {}", invalidations.size(), e.getMessage());
+            outbox.addAll(invalidations);
+        }
+    }
+
+    private void listen() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                if (reconnecting) {
+                    // Whatever was sent while disconnected is lost
+                    lastSeen.clear();
+                    LocalInvalidationBus.deliver(listeners, Invalidation.all());
+                }
+                reconnecting = true;
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(1000);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            receive(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Invalidation listener disconnected, retrying in {}: {}", reconnectDelay, e.getMessage());
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        String[] parts = payload.split("\\|", 3);
+        if (parts.length < 3 || parts[0].equals(nodeId)) {
+            return;
+        }
+        try {
+            long number = Long.parseLong(parts[1]);
+            Long previous = lastSeen.put(parts[0], number);
+            if (previous != null && number != previous + 1) {
+                log.info("Missed invalidations from node {} ({} -> {}), dropping all caches",
+                        parts[0], previous, number);
+                LocalInvalidationBus.deliver(listeners, Invalidation.all());
+                return;
+            }
+            for (String entry : parts[2].split(",")) {
+                LocalInvalidationBus.deliver(listeners, Invalidation.decode(entry));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Ignoring malformed invalidation message '{}': {}", payload, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,4 @@
+-- Last lease renewal of a request still running (response_status NULL); a claim is abandoned once
+-- neither this nor created_at is within notes.idempotency.lease. NULL until the first renewal.
+
+ALTER TABLE idempotency_keys ADD COLUMN renewed_at TIMESTAMP(6);
@@ -0,0 +1,40 @@
+-- Initial schema, matching what ddl-auto=update used to create. Databases created that way are
+-- baselined at version 1 instead (see spring.flyway.baseline-version), so this never runs on them.
+
+CREATE TABLE users (
+    id       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    username VARCHAR(255) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    CONSTRAINT uk_users_username UNIQUE (username)
+);
+
+CREATE TABLE tags (
+    id   BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    CONSTRAINT uk_tags_name UNIQUE (name)
+);
+
+CREATE TABLE notes (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    title      VARCHAR(255) NOT NULL,
+    content    TEXT,
+    archived   BOOLEAN NOT NULL,
+    version    BIGINT DEFAULT 0 NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    user_id    BIGINT NOT NULL,
+    CONSTRAINT fk_notes_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE TABLE note_tags (
+    note_id BIGINT NOT NULL,
+    tag_id  BIGINT NOT NULL,
+    PRIMARY KEY (note_id, tag_id),
+    CONSTRAINT fk_note_tags_note FOREIGN KEY (note_id) REFERENCES notes (id),
+    CONSTRAINT fk_note_tags_tag FOREIGN KEY (tag_id) REFERENCES tags (id)
+);
+
+-- Active/archived lists and streams: WHERE user_id = ? AND archived = ? ORDER BY id
+CREATE INDEX idx_notes_user_archived ON notes (user_id, archived, id);
+
+-- The primary key covers note -> tags; this covers tag -> notes (tag deletion checks, joins from tags)
+CREATE INDEX idx_note_tags_tag ON note_tags (tag_id, note_id);
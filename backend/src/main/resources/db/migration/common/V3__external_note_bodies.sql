@@ -0,0 +1,12 @@
+-- Content longer than notes.content.external-threshold is stored compressed in note_bodies;
+-- notes.content then keeps only a preview and content_truncated is set. Existing notes stay
+-- inline until they are next saved. No foreign key to notes (see V2).
+
+ALTER TABLE notes ADD COLUMN content_truncated BOOLEAN DEFAULT FALSE NOT NULL;
+
+CREATE TABLE note_bodies (
+    note_id         BIGINT PRIMARY KEY,
+    codec           VARCHAR(16) NOT NULL,
+    original_length INT NOT NULL,
+    data            BYTEA NOT NULL
+);
@@ -0,0 +1,15 @@
+-- Revision history of note title and content. Every snapshot-interval-th revision holds the
+-- whole text (compressed); the ones in between hold only a delta against the previous revision.
+-- No foreign key to notes (see V2).
+
+CREATE TABLE note_revisions (
+    note_id         BIGINT NOT NULL,
+    revision        INT NOT NULL,
+    title           VARCHAR(255) NOT NULL,
+    snapshot        BOOLEAN NOT NULL,
+    codec           VARCHAR(16) NOT NULL,
+    original_length INT NOT NULL,
+    data            BYTEA NOT NULL,
+    created_at      TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (note_id, revision)
+);
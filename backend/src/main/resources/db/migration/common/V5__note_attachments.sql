@@ -0,0 +1,17 @@
+-- Files attached to notes. The bytes live on disk, content-addressed by their SHA-256 under
+-- notes.attachments.dir, so identical uploads share one file. No foreign key to notes (see V2).
+
+CREATE TABLE note_attachments (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    note_id      BIGINT NOT NULL,
+    file_name    VARCHAR(255) NOT NULL,
+    content_type VARCHAR(255) NOT NULL,
+    size_bytes   BIGINT NOT NULL,
+    sha256       VARCHAR(64) NOT NULL,
+    created_at   TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX idx_note_attachments_note ON note_attachments (note_id, id);
+
+-- Whether a file is still referenced once an attachment is deleted
+CREATE INDEX idx_note_attachments_sha256 ON note_attachments (sha256);
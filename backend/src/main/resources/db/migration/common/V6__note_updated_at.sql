@@ -0,0 +1,6 @@
+-- Time of the last change to a note, for sorting lists by last update. Existing notes
+-- start from their creation time.
+
+ALTER TABLE notes ADD COLUMN updated_at TIMESTAMP(6);
+UPDATE notes SET updated_at = created_at;
+ALTER TABLE notes ALTER COLUMN updated_at SET NOT NULL;
@@ -0,0 +1,32 @@
+-- Per-user note counts kept up to date by every note write, so stats never scan notes.
+-- The user_note_counts row is also the lock that orders those writes against the reconciler.
+-- No foreign keys: tags are checked on read, and rows are rebuilt by the reconciler.
+
+CREATE TABLE user_note_counts (
+    user_id        BIGINT PRIMARY KEY,
+    active_count   BIGINT NOT NULL DEFAULT 0,
+    archived_count BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE user_tag_counts (
+    user_id        BIGINT NOT NULL,
+    tag_id         BIGINT NOT NULL,
+    active_count   BIGINT NOT NULL DEFAULT 0,
+    archived_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (user_id, tag_id)
+);
+
+INSERT INTO user_note_counts (user_id, active_count, archived_count)
+SELECT user_id,
+       SUM(CASE WHEN archived THEN 0 ELSE 1 END),
+       SUM(CASE WHEN archived THEN 1 ELSE 0 END)
+FROM notes
+GROUP BY user_id;
+
+INSERT INTO user_tag_counts (user_id, tag_id, active_count, archived_count)
+SELECT n.user_id, nt.tag_id,
+       SUM(CASE WHEN n.archived THEN 0 ELSE 1 END),
+       SUM(CASE WHEN n.archived THEN 1 ELSE 0 END)
+FROM notes n
+JOIN note_tags nt ON nt.note_id = n.id
+GROUP BY n.user_id, nt.tag_id;
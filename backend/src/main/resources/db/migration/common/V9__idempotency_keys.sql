@@ -0,0 +1,21 @@
+-- Results of note writes sent with an Idempotency-Key, so a retry gets the first response back
+-- instead of writing again. A row without response_status is a request still running on some node.
+-- response_body is the JSON response, deflated (see ContentCodec); rows are purged after the TTL.
+-- For a body only read while the write runs (imports), body_hash is the SHA-256 of the body_length
+-- bytes that arrived, and body_complete whether that was the whole body.
+
+CREATE TABLE idempotency_keys (
+    user_id         BIGINT       NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    request_hash    BYTEA        NOT NULL,
+    response_status SMALLINT,
+    response_body   BYTEA,
+    response_length INTEGER,
+    body_hash       BYTEA,
+    body_length     BIGINT,
+    body_complete   BOOLEAN,
+    created_at      TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (user_id, idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_keys_created_at ON idempotency_keys (created_at);
@@ -0,0 +1,5 @@
+-- PostgreSQL partitions notes by archived in this version (see db/migration/postgresql).
+-- H2 has no table partitioning, so the test schema keeps the single notes table and its
+-- (user_id, archived, id) index from V1. Tables added later that hold rows per note have no
+-- foreign key to notes here either, so both schemas behave alike (see the PostgreSQL V2).
+SELECT 1;
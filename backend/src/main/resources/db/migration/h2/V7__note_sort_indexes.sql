@@ -0,0 +1,6 @@
+-- Same sort indexes as on PostgreSQL, with archived in the keys since notes is not
+-- partitioned here (see V2).
+
+CREATE INDEX idx_notes_user_title ON notes (user_id, archived, title, id);
+CREATE INDEX idx_notes_user_created ON notes (user_id, archived, created_at, id);
+CREATE INDEX idx_notes_user_updated ON notes (user_id, archived, updated_at, id);
@@ -0,0 +1,59 @@
+-- Hot/cold split: notes becomes a table partitioned by archived, so active notes and their
+-- indexes stay small no matter how many archived notes pile up. Archiving or unarchiving
+-- is a plain UPDATE of archived, which PostgreSQL turns into a move between partitions.
+
+-- A foreign key can only reference a partitioned table through a unique key that includes
+-- the partition column, so note_tags -> notes cannot be kept; Hibernate removes a note's
+-- note_tags rows itself before deleting the note. The name differs between databases
+-- created by Hibernate and by V1, hence the lookup. For the same reason, tables added later
+-- that hold rows per note (note_id) have no foreign key to notes; the application deletes
+-- their rows along with the note.
+DO $$
+DECLARE
+    fk RECORD;
+BEGIN
+    FOR fk IN SELECT conname FROM pg_constraint
+              WHERE conrelid = 'note_tags'::regclass AND confrelid = 'notes'::regclass AND contype = 'f'
+    LOOP
+        EXECUTE format('ALTER TABLE note_tags DROP CONSTRAINT %I', fk.conname);
+    END LOOP;
+END $$;
+
+ALTER TABLE notes RENAME TO notes_unpartitioned;
+
+CREATE TABLE notes (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    title      VARCHAR(255) NOT NULL,
+    content    TEXT,
+    archived   BOOLEAN NOT NULL,
+    version    BIGINT DEFAULT 0 NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    user_id    BIGINT NOT NULL,
+    CONSTRAINT pk_notes PRIMARY KEY (id, archived),
+    CONSTRAINT fk_notes_owner FOREIGN KEY (user_id) REFERENCES users (id)
+) PARTITION BY LIST (archived);
+
+CREATE TABLE notes_active PARTITION OF notes FOR VALUES IN (false);
+CREATE TABLE notes_archived PARTITION OF notes FOR VALUES IN (true);
+
+-- Cold tier: move archived content out of line (TOAST) even when short, compressed with
+-- ${archived_content_compression} where the server supports it (PostgreSQL 14+ built with lz4)
+ALTER TABLE notes_archived SET (toast_tuple_target = 128);
+DO $$
+BEGIN
+    EXECUTE 'ALTER TABLE notes_archived ALTER COLUMN content SET COMPRESSION ${archived_content_compression}';
+EXCEPTION
+    WHEN feature_not_supported OR syntax_error OR invalid_parameter_value THEN
+        RAISE NOTICE 'Compression ${archived_content_compression} not available, keeping the server default';
+END $$;
+
+INSERT INTO notes (id, title, content, archived, version, created_at, user_id)
+    OVERRIDING SYSTEM VALUE
+    SELECT id, title, content, archived, version, created_at, user_id FROM notes_unpartitioned;
+
+SELECT setval(pg_get_serial_sequence('notes', 'id'), COALESCE(MAX(id), 0) + 1, false) FROM notes;
+
+DROP TABLE notes_unpartitioned;
+
+-- Created on each partition; the archived flag is implied by the partition
+CREATE INDEX idx_notes_user ON notes (user_id, id);
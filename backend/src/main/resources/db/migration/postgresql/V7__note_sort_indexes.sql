@@ -0,0 +1,8 @@
+-- One index per supported list sort (title, created, updated; id is idx_notes_user from V2),
+-- each ending in id like the ORDER BY, so a page is read in order straight from the index,
+-- forwards or backwards, and never sorted. notes is partitioned by archived, so the archived
+-- filter picks the partition and is not part of the keys.
+
+CREATE INDEX idx_notes_user_title ON notes (user_id, title, id);
+CREATE INDEX idx_notes_user_created ON notes (user_id, created_at, id);
+CREATE INDEX idx_notes_user_updated ON notes (user_id, updated_at, id);
@@ -0,0 +1,153 @@
+package com.ensolvers.notes.config;
+
+import com.ensolvers.notes.model.Note;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares payload size and serialize/deserialize throughput of JSON, CBOR and Smile for
+ * note lists as the list endpoints return them: pages of 50 notes with short to medium
+ * content and a few tags each.
+ * Run with: mvn test -Pbenchmark -Dtest=ResponseFormatsBenchmarkTest
+ */
+@Tag("benchmark")
+public class ResponseFormatsBenchmarkTest {
+
+    private static final int LISTS = 200;
+    private static final int NOTES_PER_LIST = 50;
+    private static final int ROUNDS = 5;
+
+    private static final String[] WORDS = (
+            "the of and to in is that for it as with was on be by this are from at or an have not "
+            + "meeting project notes review deadline client release backend frontend database query index "
+            + "deploy server cache latency request response user account invoice budget roadmap sprint "
+            + "design draft summary action item follow up decision owner status blocked done pending"
+    ).split(" ");
+
+    private static final String[] TAGS = {"work", "home", "ideas", "urgent", "reading", "travel", "finance", "health"};
+
+    @Test
+    public void benchmark_note_lists_per_format() throws IOException {
+        List<Note[]> lists = generateLists(new Random(42));
+
+        // Configured like the application's mappers (see BinaryFormatsConfig): ISO dates, not timestamps
+        Map<String, ObjectMapper> mappers = new LinkedHashMap<>();
+        mappers.put("JSON", configure(Jackson2ObjectMapperBuilder.json()));
+        mappers.put("CBOR", configure(Jackson2ObjectMapperBuilder.cbor()));
+        mappers.put("Smile", configure(Jackson2ObjectMapperBuilder.smile()));
+
+        long jsonBytes = 0;
+        for (Map.Entry<String, ObjectMapper> format : mappers.entrySet()) {
+            ObjectMapper mapper = format.getValue();
+            List<byte[]> encoded = runWrite(mapper, lists);
+            long bytes = encoded.stream().mapToLong(data -> data.length).sum();
+            if (jsonBytes == 0) {
+                jsonBytes = bytes;
+            }
+
+            // Warm up the JIT before timing
+            runWrite(mapper, lists);
+            runRead(mapper, encoded);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                runWrite(mapper, lists);
+            }
+            long writeNanos = (System.nanoTime() - start) / ROUNDS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                runRead(mapper, encoded);
+            }
+            long readNanos = (System.nanoTime() - start) / ROUNDS;
+
+            System.out.printf("%s: %d lists of %d notes, %.2f MB (%.0f%% of JSON, %.1f KB/list)%n",
+                    format.getKey(), lists.size(), NOTES_PER_LIST, bytes / 1e6, 100.0 * bytes / jsonBytes,
+                    bytes / 1e3 / lists.size());
+            System.out.printf("%s: write %.0f lists/s (%.0f us/list), read %.0f lists/s (%.0f us/list)%n",
+                    format.getKey(), lists.size() / (writeNanos / 1e9), writeNanos / 1e3 / lists.size(),
+                    lists.size() / (readNanos / 1e9), readNanos / 1e3 / lists.size());
+
+            assertTrue(bytes <= jsonBytes);
+        }
+    }
+
+    private static ObjectMapper configure(Jackson2ObjectMapperBuilder builder) {
+        return builder.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+    }
+
+    private static List<byte[]> runWrite(ObjectMapper mapper, List<Note[]> lists) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(lists.size());
+        for (Note[] notes : lists) {
+            encoded.add(mapper.writeValueAsBytes(notes));
+        }
+        return encoded;
+    }
+
+    private static void runRead(ObjectMapper mapper, List<byte[]> encoded) throws IOException {
+        for (byte[] data : encoded) {
+            Note[] notes = mapper.readValue(data, Note[].class);
+            if (notes.length != NOTES_PER_LIST) {
+                fail("Round trip changed a list");
+            }
+        }
+    }
+
+    // Content between 100 bytes and 4 KB, sized log-uniformly; up to three tags
+    private static List<Note[]> generateLists(Random random) {
+        List<Note[]> lists = new ArrayList<>(LISTS);
+        LocalDateTime now = LocalDateTime.of(2024, 6, 1, 12, 0);
+        long id = 1;
+        for (int l = 0; l < LISTS; l++) {
+            Note[] notes = new Note[NOTES_PER_LIST];
+            for (int n = 0; n < NOTES_PER_LIST; n++) {
+                int target = (int) (100 * Math.pow(40, random.nextDouble()));
+                StringBuilder content = new StringBuilder(target + 128);
+                while (content.length() < target) {
+                    content.append(sentence(random, 6 + random.nextInt(12))).append(' ');
+                }
+                Set<com.ensolvers.notes.model.Tag> tags = new HashSet<>();
+                for (int t = random.nextInt(4); t > 0; t--) {
+                    int tag = random.nextInt(TAGS.length);
+                    tags.add(com.ensolvers.notes.model.Tag.builder().id((long) tag + 1).name(TAGS[tag]).build());
+                }
+                LocalDateTime createdAt = now.minusMinutes(random.nextInt(500_000));
+                notes[n] = Note.builder()
+                        .id(id++)
+                        .title(sentence(random, 2 + random.nextInt(5)))
+                        .content(content.toString())
+                        .archived(random.nextInt(10) == 0)
+                        .version((long) random.nextInt(5))
+                        .createdAt(createdAt)
+                        .updatedAt(createdAt.plusMinutes(random.nextInt(10_000)))
+                        .tags(tags)
+                        .build();
+            }
+            lists.add(notes);
+        }
+        return lists;
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (i == 0) {
+                word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+            } else {
+                sentence.append(' ');
+            }
+            sentence.append(word);
+        }
+        return sentence.append('.').toString();
+    }
+}
@@ -0,0 +1,119 @@
+package com.ensolvers.notes.config.concurrency;
+
+import com.ensolvers.notes.config.concurrency.AdaptiveConcurrencyLimiter.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the limiter with synthetic latency samples instead of real requests.
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long NORMAL_RTT = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW_RTT = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private ConcurrencyLimitProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeEach
+    public void setup() {
+        properties = new ConcurrencyLimitProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new AdaptiveConcurrencyLimiter(properties, meterRegistry);
+    }
+
+    // Each sample as if the whole current limit was in use when the request started
+    private void sample(int count, long rttNanos) {
+        for (int i = 0; i < count; i++) {
+            int inflightAtStart = limiter.tryAcquire(Priority.HIGH);
+            assertTrue(inflightAtStart >= 0);
+            limiter.release((int) limiter.getLimit(), rttNanos);
+        }
+    }
+
+    private void acquire(int count, Priority priority) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(limiter.tryAcquire(priority) >= 0);
+        }
+    }
+
+    private double rejected(String priority) {
+        return meterRegistry.get("http.concurrency.rejected").tag("priority", priority).counter().count();
+    }
+
+    // ==================== LIMIT TESTS (1-3) ====================
+
+    @Test
+    public void test_001_limit_grows_while_latency_is_steady_and_the_limit_is_used() {
+        sample(50, NORMAL_RTT);
+
+        assertTrue(limiter.getLimit() > properties.getInitialLimit(), "limit " + limiter.getLimit());
+        assertTrue(limiter.getLimit() <= properties.getMaxLimit());
+    }
+
+    @Test
+    public void test_002_limit_does_not_grow_when_traffic_does_not_use_it() {
+        for (int i = 0; i < 50; i++) {
+            int inflightAtStart = limiter.tryAcquire(Priority.HIGH);
+            limiter.release(inflightAtStart, NORMAL_RTT);
+        }
+
+        assertEquals(properties.getInitialLimit(), limiter.getLimit());
+    }
+
+    @Test
+    public void test_003_limit_shrinks_to_the_minimum_when_latency_rises() {
+        sample(100, NORMAL_RTT);
+        double steady = limiter.getLimit();
+
+        sample(5, SLOW_RTT);
+        assertTrue(limiter.getLimit() < steady, "limit " + limiter.getLimit() + " after " + steady);
+
+        sample(100, SLOW_RTT);
+        assertEquals(properties.getMinLimit(), limiter.getLimit());
+    }
+
+    // ==================== PRIORITY TESTS (4-5) ====================
+
+    @Test
+    public void test_004_reads_are_shed_before_writes() {
+        // 37.5 of the 50 slots may go to reads
+        acquire(38, Priority.HIGH);
+
+        assertEquals(-1, limiter.tryAcquire(Priority.LOW));
+        assertEquals(38, limiter.tryAcquire(Priority.HIGH));
+
+        acquire(11, Priority.HIGH);
+        assertEquals(-1, limiter.tryAcquire(Priority.HIGH));
+        assertEquals(1, rejected("low"));
+        assertEquals(1, rejected("high"));
+    }
+
+    @Test
+    public void test_005_after_a_slowdown_reads_are_rejected_while_writes_are_admitted() {
+        sample(100, NORMAL_RTT);
+        sample(100, SLOW_RTT);
+        assertEquals(10, limiter.getLimit());
+
+        // 7.5 of the 10 slots may go to reads
+        acquire(7, Priority.LOW);
+        acquire(1, Priority.HIGH);
+        assertEquals(-1, limiter.tryAcquire(Priority.LOW));
+        assertEquals(8, limiter.tryAcquire(Priority.HIGH));
+        assertEquals(9, limiter.tryAcquire(Priority.HIGH));
+        assertEquals(-1, limiter.tryAcquire(Priority.HIGH));
+
+        // Released slots (without a sample, as for failed requests) are available again
+        limiter.release(0, 0);
+        limiter.release(0, 0);
+        limiter.release(0, 0);
+        assertEquals(7, limiter.tryAcquire(Priority.LOW));
+        assertEquals(10, limiter.getLimit());
+    }
+}
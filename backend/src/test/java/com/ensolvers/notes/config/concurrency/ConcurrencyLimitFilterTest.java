@@ -0,0 +1,101 @@
+package com.ensolvers.notes.config.concurrency;
+
+import com.ensolvers.notes.config.concurrency.AdaptiveConcurrencyLimiter.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the filter on mock requests against a limiter whose slots the test fills by hand.
+ */
+public class ConcurrencyLimitFilterTest {
+
+    private AdaptiveConcurrencyLimiter limiter;
+    private ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    public void setup() {
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        properties.setInitialLimit(10);
+        limiter = new AdaptiveConcurrencyLimiter(properties, new SimpleMeterRegistry());
+        filter = new ConcurrencyLimitFilter(limiter, properties);
+    }
+
+    private void fill(int slots) {
+        for (int i = 0; i < slots; i++) {
+            assertTrue(limiter.tryAcquire(Priority.HIGH) >= 0);
+        }
+    }
+
+    // The response, or null when the request got through to the chain
+    private MockHttpServletResponse perform(String method, String path) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        return chain.getRequest() != null ? null : response;
+    }
+
+    // ==================== SHEDDING TESTS (1-3) ====================
+
+    @Test
+    public void test_001_rejected_request_gets_503_with_retry_after() throws Exception {
+        fill(10);
+
+        MockHttpServletResponse response = perform("POST", "/api/notes/create");
+
+        assertNotNull(response);
+        assertEquals(503, response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
+        assertEquals("application/json", response.getContentType());
+        assertTrue(response.getContentAsString().contains("\"error\""));
+    }
+
+    @Test
+    public void test_002_list_reads_are_shed_before_writes_and_auth() throws Exception {
+        // 7.5 of the 10 slots may go to reads
+        fill(8);
+
+        assertNotNull(perform("GET", "/api/notes/active"));
+        assertNotNull(perform("GET", "/api/tags"));
+        assertNull(perform("POST", "/api/notes/create"));
+        assertNull(perform("GET", "/api/auth/me"));
+    }
+
+    @Test
+    public void test_003_slot_is_released_after_the_request() throws Exception {
+        fill(9);
+
+        assertNull(perform("POST", "/api/notes/create"));
+        assertNull(perform("POST", "/api/notes/create"));
+        assertEquals(9, limiter.tryAcquire(Priority.HIGH));
+    }
+
+    // ==================== EXCLUSION TESTS (4) ====================
+
+    @Test
+    public void test_004_long_lived_and_unguarded_requests_are_not_limited() throws Exception {
+        fill(10);
+
+        assertNull(perform("GET", "/api/notes/export"));
+        assertNull(perform("POST", "/api/notes/import"));
+        assertNull(perform("GET", "/api/notes/stream"));
+        assertNull(perform("GET", "/api/notes/42/attachments/7"));
+        assertNull(perform("OPTIONS", "/api/notes/active"));
+        assertNull(perform("GET", "/actuator/health"));
+
+        MockHttpServletRequest streamed = new MockHttpServletRequest("GET", "/api/notes/active");
+        streamed.setParameter("stream", "true");
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(streamed, new MockHttpServletResponse(), chain);
+        assertNotNull(chain.getRequest());
+
+        // Still full for everything else
+        assertNotNull(perform("POST", "/api/notes/create"));
+    }
+}
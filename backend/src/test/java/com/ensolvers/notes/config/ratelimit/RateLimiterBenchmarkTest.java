@@ -0,0 +1,116 @@
+package com.ensolvers.notes.config.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures the per-request cost of the rate limiter under contention.
+ * Run with: mvn test -Pbenchmark -Dtest=RateLimiterBenchmarkTest
+ */
+@Tag("benchmark")
+public class RateLimiterBenchmarkTest {
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int OPERATIONS_PER_THREAD = 2_000_000;
+    private static final int USERS = 10_000;
+
+    @Test
+    public void benchmark_token_bucket_acquire() throws Exception {
+        RateLimitProperties properties = new RateLimitProperties();
+        RateLimitProperties.Route route = new RateLimitProperties.Route();
+        route.setPattern("/api/notes/**");
+        route.setPermitsPerSecond(1_000_000);
+        route.setBurst(1_000_000);
+        properties.setRoutes(List.of(route));
+        RateLimiter limiter = new RateLimiter(properties, new SimpleMeterRegistry());
+
+        String[] keys = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            keys[i] = "user:" + i;
+        }
+
+        // Warm up the JIT and create every bucket
+        runThreads(limiter, route, keys, OPERATIONS_PER_THREAD / 4);
+
+        long start = System.nanoTime();
+        long allowed = runThreads(limiter, route, keys, OPERATIONS_PER_THREAD);
+        long elapsed = System.nanoTime() - start;
+
+        long operations = (long) THREADS * OPERATIONS_PER_THREAD;
+        double nanosPerOp = (double) elapsed * THREADS / operations;
+        System.out.printf("RateLimiter: %d threads, %,d ops, %.1f ns/op per thread, %,.0f ops/s total%n",
+                THREADS, operations, nanosPerOp, operations / (elapsed / 1e9));
+
+        assertEquals(operations, allowed);
+    }
+
+    @Test
+    public void benchmark_path_matching_and_acquire_for_single_hot_user() throws Exception {
+        RateLimitProperties properties = new RateLimitProperties();
+        RateLimitProperties.Route auth = new RateLimitProperties.Route();
+        auth.setPattern("/api/auth/**");
+        auth.setPermitsPerSecond(10);
+        auth.setBurst(10);
+        RateLimitProperties.Route notes = new RateLimitProperties.Route();
+        notes.setPattern("/api/notes/**");
+        notes.setPermitsPerSecond(1_000_000_000);
+        notes.setBurst(1_000_000_000);
+        properties.setRoutes(List.of(auth, notes));
+        RateLimiter limiter = new RateLimiter(properties, new SimpleMeterRegistry());
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < OPERATIONS_PER_THREAD / 4; i++) {
+                    limiter.tryAcquire(limiter.findRoute("/api/notes/active"), "user:hot");
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        long operations = (long) THREADS * (OPERATIONS_PER_THREAD / 4);
+        System.out.printf("RateLimiter (route lookup + one contended bucket): %.1f ns/op per thread%n",
+                (double) elapsed * THREADS / operations);
+    }
+
+    private long runThreads(RateLimiter limiter, RateLimitProperties.Route route, String[] keys, int operations)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int offset = t * 7919;
+            futures.add(pool.submit(() -> {
+                long allowed = 0;
+                for (int i = 0; i < operations; i++) {
+                    if (limiter.tryAcquire(route, keys[(offset + i) % keys.length]).allowed()) {
+                        allowed++;
+                    }
+                }
+                return allowed;
+            }));
+        }
+        long allowed = 0;
+        for (Future<Long> future : futures) {
+            allowed += future.get();
+        }
+        pool.shutdown();
+        return allowed;
+    }
+}
@@ -0,0 +1,234 @@
+package com.ensolvers.notes.controller;
+
+import com.ensolvers.notes.config.jwt.JwtUtil;
+import com.ensolvers.notes.model.Note;
+import com.ensolvers.notes.repository.NoteRepository;
+import com.ensolvers.notes.repository.TagRepository;
+import com.ensolvers.notes.repository.UserRepository;
+import com.ensolvers.notes.service.NoteService;
+import com.ensolvers.notes.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.reset;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+        "notes.autosave.coalescing.enabled=true",
+        "notes.autosave.flush-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class NoteWriteCoalescingIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @SpyBean
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    private String testUserToken;
+
+    @BeforeEach
+    public void setup() {
+        noteRepository.deleteAll();
+        tagRepository.deleteAll();
+        userRepository.deleteAll();
+
+        userService.registerUser("autosaver", "password123");
+        testUserToken = jwtUtil.generateToken("autosaver");
+    }
+
+    private long createNote() throws Exception {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("title", "Draft");
+        payload.put("content", "v0");
+        payload.put("tags", List.of());
+
+        MvcResult result = mockMvc.perform(post("/api/notes/create")
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(payload)))
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
+    }
+
+    private void autosave(long noteId, String content) throws Exception {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("title", "Draft");
+        payload.put("content", content);
+        payload.put("tags", List.of());
+
+        mockMvc.perform(put("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value(content));
+    }
+
+    @Test
+    public void test_001_burst_of_updates_is_written_once_with_latest_content() throws Exception {
+        long noteId = createNote();
+
+        autosave(noteId, "v1");
+        autosave(noteId, "v2");
+        autosave(noteId, "v3");
+
+        Note stored = noteRepository.findById(noteId).orElseThrow();
+        assertEquals("v0", stored.getContent());
+
+        noteService.flushPendingWrites();
+
+        stored = noteRepository.findById(noteId).orElseThrow();
+        assertEquals("v3", stored.getContent());
+        assertEquals(1L, stored.getVersion());
+    }
+
+    @Test
+    public void test_002_list_read_sees_buffered_update() throws Exception {
+        long noteId = createNote();
+
+        autosave(noteId, "latest");
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].content").value("latest"));
+    }
+
+    @Test
+    public void test_003_single_note_and_revision_reads_see_buffered_update() throws Exception {
+        long noteId = createNote();
+
+        autosave(noteId, "latest");
+
+        mockMvc.perform(get("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value("latest"));
+        assertEquals("latest", noteRepository.findById(noteId).orElseThrow().getContent());
+
+        autosave(noteId, "newer");
+
+        mockMvc.perform(get("/api/notes/" + noteId + "/revisions/3")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value("newer"));
+
+        autosave(noteId, "newest");
+
+        mockMvc.perform(get("/api/notes/" + noteId + "/revisions")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[0].revision").value(4));
+    }
+
+    @Test
+    public void test_004_etag_of_coalesced_update_is_valid_for_the_next_conditional_write() throws Exception {
+        long noteId = createNote();
+
+        MvcResult staged = mockMvc.perform(put("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Draft\",\"content\":\"v1\",\"tags\":[]}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        String etag = staged.getResponse().getHeader("ETag");
+        assertEquals("\"1\"", etag);
+
+        // The PATCH flushes the buffered update first and then finds the note at that version
+        mockMvc.perform(patch("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("If-Match", etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Renamed\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""))
+                .andExpect(jsonPath("$.title").value("Renamed"))
+                .andExpect(jsonPath("$.content").value("v1"));
+    }
+
+    @Test
+    public void test_005_failed_write_does_not_lose_buffered_update() throws Exception {
+        long noteId = createNote();
+        autosave(noteId, "kept");
+
+        // Someone else's request neither writes nor discards the owner's buffered update
+        userService.registerUser("intruder", "password123");
+        mockMvc.perform(put("/api/notes/" + noteId + "/archive")
+                .header("Authorization", "Bearer " + jwtUtil.generateToken("intruder")))
+                .andExpect(status().isBadRequest());
+        assertEquals("v0", noteRepository.findById(noteId).orElseThrow().getContent());
+
+        // A rejected conditional write of the owner still leaves the buffered update written
+        mockMvc.perform(patch("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Stale\"}"))
+                .andExpect(status().isPreconditionFailed());
+
+        Note stored = noteRepository.findById(noteId).orElseThrow();
+        assertEquals("kept", stored.getContent());
+        assertEquals("Draft", stored.getTitle());
+        assertEquals(1L, stored.getVersion());
+    }
+
+    @Test
+    public void test_006_buffered_update_survives_a_transient_flush_failure() throws Exception {
+        long noteId = createNote();
+        autosave(noteId, "kept");
+
+        doThrow(new QueryTimeoutException("Lock wait timeout")).when(noteRepository).save(any(Note.class));
+
+        // The failed flush puts the update back into the buffer instead of dropping it
+        noteService.flushPendingWrites();
+        reset(noteRepository);
+        assertEquals("v0", noteRepository.findById(noteId).orElseThrow().getContent());
+
+        mockMvc.perform(get("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value("kept"));
+        assertEquals("kept", noteRepository.findById(noteId).orElseThrow().getContent());
+    }
+}
@@ -1,28 +1,66 @@
 package com.ensolvers.notes.controller;
 
+import com.ensolvers.notes.config.ResponseFormats;
 import com.ensolvers.notes.config.jwt.JwtUtil;
 import com.ensolvers.notes.dto.AuthRequest;
+import com.ensolvers.notes.dto.ContentEditRequest;
+import com.ensolvers.notes.model.NoteRevision;
 import com.ensolvers.notes.model.User;
+import com.ensolvers.notes.repository.AttachmentRepository;
+import com.ensolvers.notes.repository.NoteBodyRepository;
 import com.ensolvers.notes.repository.NoteRepository;
+import com.ensolvers.notes.repository.NoteRevisionRepository;
 import com.ensolvers.notes.repository.TagRepository;
 import com.ensolvers.notes.repository.UserRepository;
+import com.ensolvers.notes.service.AttachmentService;
+import com.ensolvers.notes.service.ContentDelta;
+import com.ensolvers.notes.service.IdempotencyStore;
+import com.ensolvers.notes.service.NoteCountStore;
+import com.ensolvers.notes.service.NoteListCache;
 import com.ensolvers.notes.service.UserService;
+import com.ensolvers.notes.service.invalidation.Invalidation;
+import com.ensolvers.notes.service.invalidation.InvalidationBus;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -40,12 +78,27 @@ public class NotesApplicationIntegrationTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private ResponseFormats responseFormats;
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
     private NoteRepository noteRepository;
 
+    @Autowired
+    private NoteBodyRepository noteBodyRepository;
+
+    @Autowired
+    private NoteRevisionRepository noteRevisionRepository;
+
+    @Autowired
+    private AttachmentRepository attachmentRepository;
+
+    @Autowired
+    private AttachmentService attachmentService;
+
     @Autowired
     private TagRepository tagRepository;
 
@@ -58,11 +111,32 @@ public class NotesApplicationIntegrationTest {
     @Autowired
     private BCryptPasswordEncoder passwordEncoder;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Autowired
+    private NoteListCache noteListCache;
+
+    @SpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NoteCountStore noteCountStore;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     private String testUserToken;
     private User testUser;
 
     @BeforeEach
     public void setup() {
+        noteBodyRepository.deleteAll();
+        noteRevisionRepository.deleteAll();
+        attachmentRepository.deleteAll();
         noteRepository.deleteAll();
         tagRepository.deleteAll();
         userRepository.deleteAll();
@@ -814,4 +888,1530 @@ public class NotesApplicationIntegrationTest {
         mockMvc.perform(get("/api/notes/archived"))
                 .andExpect(status().isForbidden());
     }
+
+    // ==================== STREAM TESTS (51-52) ====================
+
+    @Test
+    public void test_051_note_stream_without_token_fails() throws Exception {
+        mockMvc.perform(get("/api/notes/stream"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void test_052_note_stream_receives_created_event() throws Exception {
+        MvcResult streamResult = mockMvc.perform(get("/api/notes/stream")
+                .param("access_token", testUserToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("title", "Streamed Note");
+        payload.put("content", "Content");
+        payload.put("tags", List.of());
+
+        mockMvc.perform(post("/api/notes/create")
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk());
+
+        String body = "";
+        for (int i = 0; i < 50 && !body.contains("event:CREATED"); i++) {
+            Thread.sleep(50);
+            body = streamResult.getResponse().getContentAsString();
+        }
+        assertTrue(body.contains("event:CREATED"));
+    }
+
+    // ==================== PATCH TESTS (53-55) ====================
+
+    private JsonNode createNote(String title, String content, List<String> tags) throws Exception {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("title", title);
+        payload.put("content", content);
+        payload.put("tags", tags);
+
+        MvcResult result = mockMvc.perform(post("/api/notes/create")
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(payload)))
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    @Test
+    public void test_053_patch_note_changes_only_sent_fields() throws Exception {
+        JsonNode note = createNote("Original", "Original content", List.of("keep"));
+
+        mockMvc.perform(patch("/api/notes/" + note.get("id").asLong())
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Renamed\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.title").value("Renamed"))
+                .andExpect(jsonPath("$.content").value("Original content"))
+                .andExpect(jsonPath("$.tags", hasSize(1)));
+    }
+
+    @Test
+    public void test_054_patch_with_stale_if_match_fails() throws Exception {
+        JsonNode note = createNote("Original", "Content", List.of());
+        long noteId = note.get("id").asLong();
+
+        mockMvc.perform(patch("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"First\"}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(patch("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Second\"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    public void test_055_update_note_replaces_only_changed_tags() throws Exception {
+        JsonNode note = createNote("Note", "Content", List.of("a", "b"));
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("title", "Note");
+        payload.put("content", "Content");
+        payload.put("tags", List.of("b", "c"));
+
+        mockMvc.perform(put("/api/notes/" + note.get("id").asLong())
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(payload)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tags[*].name", containsInAnyOrder("b", "c")));
+    }
+
+    // ==================== CONTENT EDIT TESTS (56-57) ====================
+
+    @Test
+    public void test_056_content_edits_are_applied_to_base_version() throws Exception {
+        JsonNode note = createNote("Draft", "Hello world", List.of());
+        long noteId = note.get("id").asLong();
+
+        ContentEditRequest request = ContentEditRequest.builder()
+                .baseVersion(note.get("version").asLong())
+                .edits(List.of(new ContentEditRequest.Splice(6, 5, "notes"),
+                        new ContentEditRequest.Splice(11, 0, "!")))
+                .contentHash(ContentDelta.hash("Hello notes!"))
+                .build();
+
+        mockMvc.perform(patch("/api/notes/" + noteId + "/content")
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(1))
+                .andExpect(jsonPath("$.content").doesNotExist());
+
+        assertEquals("Hello notes!", noteRepository.findById(noteId).orElseThrow().getContent());
+    }
+
+    @Test
+    public void test_057_content_edits_with_wrong_hash_are_rejected() throws Exception {
+        JsonNode note = createNote("Draft", "Hello world", List.of());
+        long noteId = note.get("id").asLong();
+
+        ContentEditRequest request = ContentEditRequest.builder()
+                .baseVersion(note.get("version").asLong())
+                .edits(List.of(new ContentEditRequest.Splice(0, 5, "Bye")))
+                .contentHash(ContentDelta.hash("Hello world"))
+                .build();
+
+        mockMvc.perform(patch("/api/notes/" + noteId + "/content")
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isConflict());
+
+        assertEquals("Hello world", noteRepository.findById(noteId).orElseThrow().getContent());
+    }
+
+    // ==================== STREAMING LIST TESTS (58) ====================
+
+    @Test
+    public void test_058_streamed_active_notes_match_regular_list() throws Exception {
+        createNote("First", "Content", List.of("tag"));
+        createNote("Second", "Content", List.of());
+
+        MvcResult result = mockMvc.perform(get("/api/notes/active")
+                .param("stream", "true")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].title").value("First"))
+                .andExpect(jsonPath("$[0].tags[0].name").value("tag"));
+    }
+
+    // ==================== EXPORT TESTS (59) ====================
+
+    @Test
+    public void test_059_export_streams_all_notes_as_ndjson() throws Exception {
+        createNote("Active", "Content", List.of("work"));
+        JsonNode archived = createNote("Archived", "Content", List.of());
+        mockMvc.perform(put("/api/notes/" + archived.get("id").asLong() + "/archive")
+                .header("Authorization", "Bearer " + testUserToken));
+
+        MvcResult result = mockMvc.perform(get("/api/notes/export")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("work", objectMapper.readTree(lines[0]).get("tags").get(0).asText());
+        assertTrue(objectMapper.readTree(lines[1]).get("archived").asBoolean());
+    }
+
+    // ==================== IMPORT TESTS (60-61) ====================
+
+    @Test
+    public void test_060_import_ndjson_reports_bad_lines() throws Exception {
+        String ndjson = "{\"title\":\"One\",\"content\":\"A\",\"tags\":[\"imported\",\"work\"]}\n"
+                + "not json\n"
+                + "{\"title\":\"Two\",\"content\":\"B\",\"archived\":true,\"tags\":[\"imported\"]}\n"
+                + "{\"content\":\"no title\"}\n";
+
+        mockMvc.perform(post("/api/notes/import")
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.errors[0].line").value(2))
+                .andExpect(jsonPath("$.errors[1].line").value(4));
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].tags", hasSize(2)));
+
+        mockMvc.perform(get("/api/notes/archived")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    public void test_061_import_markdown_zip() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("work/meeting.md"));
+            zip.write("# Weekly meeting\n\nAgenda".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("ideas.md"));
+            zip.write("Just an idea".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+
+        mockMvc.perform(post("/api/notes/import")
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType("application/zip")
+                .content(bytes.toByteArray()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2));
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$[*].title", containsInAnyOrder("Weekly meeting", "ideas")))
+                .andExpect(jsonPath("$[?(@.title == 'Weekly meeting')].content").value("Agenda"))
+                .andExpect(jsonPath("$[?(@.title == 'Weekly meeting')].tags[0].name").value("work"));
+    }
+
+    // ==================== RATE LIMIT TESTS (62) ====================
+
+    @Test
+    public void test_062_requests_over_route_limit_are_rejected() throws Exception {
+        userService.registerUser("ratelimited", "password123");
+        String token = jwtUtil.generateToken("ratelimited");
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/notes/export")
+                    .header("Authorization", "Bearer " + token))
+                    .andExpect(request().asyncStarted());
+        }
+
+        mockMvc.perform(get("/api/notes/export")
+                .header("Authorization", "Bearer " + token))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    // ==================== SECOND-LEVEL CACHE TESTS (63) ====================
+
+    @Test
+    public void test_063_tag_and_user_lookups_are_cached_and_invalidated_on_write() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        assertTrue(tagRepository.findByName("cached").isEmpty());
+        createNote("Cached", "Content", List.of("cached"));
+
+        // The tag insert invalidates the cached empty result
+        assertTrue(tagRepository.findByName("cached").isPresent());
+
+        statistics.clear();
+        tagRepository.findByName("cached");
+        userRepository.findById(testUser.getId());
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/notes/active")
+                    .header("Authorization", "Bearer " + testUserToken))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].tags[0].name").value("cached"));
+        }
+
+        assertTrue(statistics.getQueryCacheHitCount() >= 2);
+        assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+    }
+
+    // ==================== LIST CACHE TESTS (64) ====================
+
+    @Test
+    public void test_064_cached_list_is_invalidated_by_note_writes() throws Exception {
+        JsonNode note = createNote("Original", "Content", List.of());
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$[0].title").value("Original"));
+
+        // A write behind the service's back is not seen: the list comes from the cache
+        noteRepository.findById(note.get("id").asLong()).ifPresent(n -> {
+            n.setTitle("Changed directly");
+            noteRepository.save(n);
+        });
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$[0].title").value("Original"));
+
+        Map<String, Object> update = new HashMap<>();
+        update.put("title", "Updated");
+        update.put("content", "Content");
+        mockMvc.perform(put("/api/notes/" + note.get("id").asLong())
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(update)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$[0].title").value("Updated"));
+
+        mockMvc.perform(put("/api/notes/" + note.get("id").asLong() + "/archive")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$", hasSize(0)));
+        mockMvc.perform(get("/api/notes/archived")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$[0].title").value("Updated"));
+    }
+
+    // ==================== INVALIDATION BUS TESTS (65) ====================
+
+    @Test
+    public void test_065_invalidation_from_another_node_drops_cached_list() throws Exception {
+        JsonNode note = createNote("Original", "Content", List.of());
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$[0].title").value("Original"));
+
+        // Stands for a write taken by another instance, which only reaches us through the bus
+        noteRepository.findById(note.get("id").asLong()).ifPresent(n -> {
+            n.setTitle("Changed elsewhere");
+            noteRepository.save(n);
+        });
+        invalidationBus.publish(Invalidation.notes(testUser.getId(), note.get("id").asLong()));
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$[0].title").value("Changed elsewhere"));
+
+        noteRepository.findById(note.get("id").asLong()).ifPresent(n -> {
+            n.setTitle("Changed again");
+            noteRepository.save(n);
+        });
+        invalidationBus.publish(Invalidation.all());
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$[0].title").value("Changed again"));
+    }
+
+    // ==================== SINGLE FLIGHT TESTS (66) ====================
+
+    @Test
+    public void test_066_concurrent_list_reads_share_one_load_until_a_write() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Long userId = testUser.getId();
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            Future<byte[]> leader = executor.submit(() -> noteListCache.get(userId, false, () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return List.of();
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            // Same generation: joins the running load instead of querying again
+            Future<byte[]> follower = executor.submit(() -> noteListCache.get(userId, false, () -> {
+                loads.incrementAndGet();
+                return List.of();
+            }));
+            Thread.sleep(100);
+
+            // After a write, a new reader must not get the result of the load that started before it
+            invalidationBus.publish(Invalidation.notes(userId, null));
+            byte[] afterWrite = noteListCache.get(userId, false, () -> {
+                loads.incrementAndGet();
+                return List.of();
+            });
+
+            release.countDown();
+            assertEquals("[]", new String(leader.get(5, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+            assertSame(leader.get(), follower.get(5, TimeUnit.SECONDS));
+            assertNotSame(leader.get(), afterWrite);
+            assertEquals(2, loads.get());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    // ==================== EXTERNAL CONTENT TESTS (67) ====================
+
+    @Test
+    public void test_067_large_content_is_listed_as_preview_and_read_by_id() throws Exception {
+        String content = "Paragraph with some repeated words. ".repeat(600);
+        JsonNode note = createNote("Large", content, List.of("work"));
+        long noteId = note.get("id").asLong();
+
+        assertTrue(noteBodyRepository.existsById(noteId));
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$[0].contentTruncated").value(true))
+                .andExpect(jsonPath("$[0].content").value(content.substring(0, 280)));
+
+        mockMvc.perform(get("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contentTruncated").value(false))
+                .andExpect(jsonPath("$.content").value(content))
+                .andExpect(jsonPath("$.tags[0].name").value("work"));
+
+        // Content edits apply to the full text, not to the preview
+        String edited = content + "The end.";
+        ContentEditRequest request = ContentEditRequest.builder()
+                .baseVersion(note.get("version").asLong())
+                .edits(List.of(new ContentEditRequest.Splice(content.length(), 0, "The end.")))
+                .contentHash(ContentDelta.hash(edited))
+                .build();
+        mockMvc.perform(patch("/api/notes/" + noteId + "/content")
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+
+        MvcResult result = mockMvc.perform(get("/api/notes/export")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andReturn();
+        String exported = mockMvc.perform(asyncDispatch(result))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(edited, objectMapper.readTree(exported.trim()).get("content").asText());
+
+        // Shrinking the note brings the content back inline
+        Map<String, Object> update = new HashMap<>();
+        update.put("title", "Small");
+        update.put("content", "Short now");
+        mockMvc.perform(put("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(update)))
+                .andExpect(status().isOk());
+
+        assertFalse(noteBodyRepository.existsById(noteId));
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$[0].contentTruncated").value(false))
+                .andExpect(jsonPath("$[0].content").value("Short now"));
+    }
+
+    // ==================== REVISION TESTS (68-69) ====================
+
+    @Test
+    public void test_068_every_saved_version_can_be_read_back() throws Exception {
+        JsonNode note = createNote("Draft", "Line one", List.of());
+        long noteId = note.get("id").asLong();
+
+        List<String> versions = List.of("Line one", "Line one\nLine two", "Line zero\nLine one\nLine two",
+                "Line zero\nLine two", "Rewritten", "Rewritten!");
+        for (String content : versions.subList(1, versions.size())) {
+            Map<String, Object> update = new HashMap<>();
+            update.put("title", "Draft");
+            update.put("content", content);
+            mockMvc.perform(put("/api/notes/" + noteId)
+                    .header("Authorization", "Bearer " + testUserToken)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(update)))
+                    .andExpect(status().isOk());
+        }
+
+        // Archiving does not change title or content, so it adds no revision
+        mockMvc.perform(put("/api/notes/" + noteId + "/archive")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/notes/" + noteId + "/revisions")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(versions.size())))
+                .andExpect(jsonPath("$[0].revision").value(versions.size()))
+                .andExpect(jsonPath("$[0].content").doesNotExist());
+
+        // With snapshot-interval=3, revisions 1 and 4 are snapshots and the rest deltas
+        for (int revision = 1; revision <= versions.size(); revision++) {
+            mockMvc.perform(get("/api/notes/" + noteId + "/revisions/" + revision)
+                    .header("Authorization", "Bearer " + testUserToken))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.revision").value(revision))
+                    .andExpect(jsonPath("$.content").value(versions.get(revision - 1)));
+        }
+        assertTrue(noteRevisionRepository.findById(new NoteRevision.Key(noteId, 4)).orElseThrow().isSnapshot());
+        assertFalse(noteRevisionRepository.findById(new NoteRevision.Key(noteId, 5)).orElseThrow().isSnapshot());
+
+        mockMvc.perform(get("/api/notes/" + noteId + "/revisions/" + (versions.size() + 1))
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void test_069_note_without_history_keeps_its_previous_version() throws Exception {
+        JsonNode note = createNote("Old", "Written before history", List.of());
+        long noteId = note.get("id").asLong();
+        noteRevisionRepository.deleteAll();
+
+        Map<String, Object> patch = new HashMap<>();
+        patch.put("title", "New");
+        mockMvc.perform(patch("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(patch)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/notes/" + noteId + "/revisions/1")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$.title").value("Old"))
+                .andExpect(jsonPath("$.content").value("Written before history"));
+        mockMvc.perform(get("/api/notes/" + noteId + "/revisions/2")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$.title").value("New"))
+                .andExpect(jsonPath("$.content").value("Written before history"));
+
+        mockMvc.perform(delete("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk());
+        assertEquals(0, noteRevisionRepository.count());
+    }
+
+    // ==================== ATTACHMENT TESTS (70-71) ====================
+
+    @Test
+    public void test_070_attachment_download_supports_ranges_and_etag() throws Exception {
+        long noteId = createNote("With file", "Content", List.of()).get("id").asLong();
+        byte[] data = new byte[200_000];
+        new Random(7).nextBytes(data);
+
+        MvcResult upload = mockMvc.perform(post("/api/notes/" + noteId + "/attachments")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("name", "../photo.png")
+                .contentType(MediaType.IMAGE_PNG)
+                .content(data))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.fileName").value("photo.png"))
+                .andExpect(jsonPath("$.size").value(data.length))
+                .andReturn();
+        JsonNode attachment = objectMapper.readTree(upload.getResponse().getContentAsString());
+        String url = "/api/notes/" + noteId + "/attachments/" + attachment.get("id").asLong();
+        String etag = "\"" + attachment.get("sha256").asText() + "\"";
+
+        MvcResult full = mockMvc.perform(get(url).header("Authorization", "Bearer " + testUserToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] body = mockMvc.perform(asyncDispatch(full))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertArrayEquals(data, body);
+
+        MvcResult partial = mockMvc.perform(get(url)
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Range", "bytes=1000-1999"))
+                .andReturn();
+        byte[] slice = mockMvc.perform(asyncDispatch(partial))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 1000-1999/" + data.length))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertArrayEquals(Arrays.copyOfRange(data, 1000, 2000), slice);
+
+        mockMvc.perform(get(url)
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get(url)
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Range", "bytes=" + data.length + "-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */" + data.length));
+
+        // The same content uploaded again shares the file, which goes only with its last attachment
+        mockMvc.perform(post("/api/notes/" + noteId + "/attachments")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("name", "copy.png")
+                .contentType(MediaType.IMAGE_PNG)
+                .content(data))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.sha256").value(attachment.get("sha256").asText()));
+        Path file = attachmentService.fileOf(attachmentRepository.findById(attachment.get("id").asLong()).orElseThrow());
+
+        mockMvc.perform(delete(url).header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk());
+        assertTrue(Files.exists(file));
+
+        mockMvc.perform(delete("/api/notes/" + noteId).header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk());
+        assertEquals(0, attachmentRepository.count());
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void test_071_attachment_over_max_size_is_rejected() throws Exception {
+        long noteId = createNote("With file", "Content", List.of()).get("id").asLong();
+
+        mockMvc.perform(post("/api/notes/" + noteId + "/attachments")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("name", "big.bin")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(new byte[1024 * 1024 + 1]))
+                .andExpect(status().isPayloadTooLarge());
+        assertEquals(0, attachmentRepository.count());
+    }
+
+    // ==================== LIST SORT AND FILTER TESTS (72-73) ====================
+
+    @Test
+    public void test_072_lists_are_sorted_and_paged_on_request() throws Exception {
+        long banana = createNote("Banana", "b", List.of("fruit")).get("id").asLong();
+        long apple = createNote("Apple", "a", List.of()).get("id").asLong();
+        long cherry = createNote("Cherry", "c", List.of()).get("id").asLong();
+
+        Map<String, Object> update = new HashMap<>();
+        update.put("title", "Banana");
+        update.put("content", "b2");
+        update.put("tags", List.of("fruit"));
+        mockMvc.perform(put("/api/notes/" + banana)
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(update)))
+                .andExpect(status().isOk());
+
+        MvcResult first = mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("sort", "title")
+                .param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(apple))
+                .andExpect(jsonPath("$[1].id").value(banana))
+                .andExpect(jsonPath("$[1].tags[0].name").value("fruit"))
+                .andReturn();
+        String next = first.getResponse().getHeader("Link");
+        assertNotNull(next);
+        assertTrue(next.contains("page=1") && next.endsWith("rel=\"next\""));
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("sort", "title")
+                .param("size", "2")
+                .param("page", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Link"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(cherry));
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("sort", "-updatedAt"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(banana))
+                .andExpect(jsonPath("$[1].id").value(cherry))
+                .andExpect(jsonPath("$[2].id").value(apple));
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("sort", "-createdAt"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(cherry))
+                .andExpect(jsonPath("$[2].id").value(banana));
+    }
+
+    @Test
+    public void test_073_lists_filter_by_creation_date() throws Exception {
+        long old = createNote("Old", "o", List.of()).get("id").asLong();
+        long recent = createNote("Recent", "r", List.of()).get("id").asLong();
+        // created_at is not updatable through the entity
+        jdbcTemplate.update("UPDATE notes SET created_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.of(2020, 1, 15, 10, 0)), old);
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("createdTo", "2021-01-01T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(old));
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("createdFrom", "2021-01-01T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(recent));
+
+        mockMvc.perform(get("/api/notes/archived")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("createdTo", "2021-01-01T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("sort", "content"))
+                .andExpect(status().isUnprocessableEntity());
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("size", "1000"))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    // ==================== STATS TESTS (74-75) ====================
+
+    @Test
+    public void test_074_stats_follow_every_note_write() throws Exception {
+        long first = createNote("First", "a", List.of("work", "home")).get("id").asLong();
+        long second = createNote("Second", "b", List.of("work")).get("id").asLong();
+        createNote("Third", "c", List.of()).get("id").asLong();
+
+        mockMvc.perform(get("/api/notes/stats")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.active").value(3))
+                .andExpect(jsonPath("$.archived").value(0))
+                .andExpect(jsonPath("$.tags", hasSize(2)))
+                .andExpect(jsonPath("$.tags[0].name").value("home"))
+                .andExpect(jsonPath("$.tags[1].name").value("work"))
+                .andExpect(jsonPath("$.tags[1].active").value(2));
+
+        mockMvc.perform(put("/api/notes/" + second + "/archive")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk());
+        mockMvc.perform(patch("/api/notes/" + first)
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"tags\":[\"work\"]}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/notes/import")
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("{\"title\":\"Imported\",\"archived\":true,\"tags\":[\"work\",\"home\"]}\n"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/notes/" + first)
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/notes/stats")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.active").value(1))
+                .andExpect(jsonPath("$.archived").value(2))
+                .andExpect(jsonPath("$.tags", hasSize(2)))
+                .andExpect(jsonPath("$.tags[0].name").value("home"))
+                .andExpect(jsonPath("$.tags[0].active").value(0))
+                .andExpect(jsonPath("$.tags[0].archived").value(1))
+                .andExpect(jsonPath("$.tags[1].name").value("work"))
+                .andExpect(jsonPath("$.tags[1].active").value(0))
+                .andExpect(jsonPath("$.tags[1].archived").value(2));
+
+        // Nothing drifted, so the reconciler has nothing to correct
+        assertFalse(noteCountStore.reconcile(testUser.getId()));
+    }
+
+    @Test
+    public void test_075_reconciler_corrects_drifted_counts() throws Exception {
+        long noteId = createNote("Counted", "a", List.of("work")).get("id").asLong();
+        createNote("Also counted", "b", List.of()).get("id").asLong();
+
+        // Writes that bypass the application leave the counters behind
+        jdbcTemplate.update("UPDATE notes SET archived = TRUE WHERE id = ?", noteId);
+        jdbcTemplate.update("UPDATE user_tag_counts SET active_count = 7 WHERE user_id = ?", testUser.getId());
+
+        assertTrue(noteCountStore.reconcile(testUser.getId()));
+
+        mockMvc.perform(get("/api/notes/stats")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.active").value(1))
+                .andExpect(jsonPath("$.archived").value(1))
+                .andExpect(jsonPath("$.tags", hasSize(1)))
+                .andExpect(jsonPath("$.tags[0].active").value(0))
+                .andExpect(jsonPath("$.tags[0].archived").value(1));
+    }
+
+    // ==================== SPARSE FIELDSET TESTS (76-77) ====================
+
+    @Test
+    public void test_076_lists_return_only_requested_fields() throws Exception {
+        long first = createNote("First", "Long content", List.of("work", "home")).get("id").asLong();
+        createNote("Second", "More content", List.of()).get("id").asLong();
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("fields", "title"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(first))
+                .andExpect(jsonPath("$[0].title").value("First"))
+                .andExpect(jsonPath("$[0].content").doesNotExist())
+                .andExpect(jsonPath("$[0].tags").doesNotExist());
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("fields", "title,tags")
+                .param("sort", "-title"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].title").value("Second"))
+                .andExpect(jsonPath("$[0].tags", hasSize(0)))
+                .andExpect(jsonPath("$[1].tags[*].name", contains("home", "work")))
+                .andExpect(jsonPath("$[1].archived").doesNotExist());
+
+        MvcResult result = mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("stream", "true")
+                .param("fields", "id,updatedAt"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].updatedAt").exists())
+                .andExpect(jsonPath("$[0].title").doesNotExist());
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("fields", "title,owner"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Unknown field: owner"));
+    }
+
+    @Test
+    public void test_077_single_note_and_writes_return_only_requested_fields() throws Exception {
+        String large = "Paragraph of a long note. ".repeat(1000);
+        long noteId = createNote("Large", large, List.of("work")).get("id").asLong();
+
+        mockMvc.perform(get("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("fields", "title,version"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""))
+                .andExpect(jsonPath("$.title").value("Large"))
+                .andExpect(jsonPath("$.version").value(0))
+                .andExpect(jsonPath("$.content").doesNotExist());
+        mockMvc.perform(get("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("fields", "content"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value(large));
+
+        mockMvc.perform(patch("/api/notes/" + noteId)
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("fields", "version")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Renamed\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(noteId))
+                .andExpect(jsonPath("$.version").value(1))
+                .andExpect(jsonPath("$.title").doesNotExist());
+        mockMvc.perform(put("/api/notes/" + noteId + "/archive")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("fields", "archived"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.archived").value(true))
+                .andExpect(jsonPath("$.tags").doesNotExist());
+    }
+
+    // ==================== BINARY FORMAT TESTS (78-79) ====================
+
+    @Test
+    public void test_078_notes_are_read_and_written_as_cbor_and_smile() throws Exception {
+        ObjectMapper cbor = responseFormats.mapper(MediaType.APPLICATION_CBOR);
+        ObjectMapper smile = responseFormats.mapper(ResponseFormats.APPLICATION_SMILE);
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("title", "Binary");
+        payload.put("content", "Sent as CBOR");
+        payload.put("tags", List.of("work"));
+        MvcResult created = mockMvc.perform(post("/api/notes/create")
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_CBOR)
+                .accept(MediaType.APPLICATION_CBOR)
+                .content(cbor.writeValueAsBytes(payload)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+        JsonNode note = cbor.readTree(created.getResponse().getContentAsByteArray());
+        assertEquals("Binary", note.get("title").asText());
+        assertEquals("work", note.get("tags").get(0).get("name").asText());
+
+        MvcResult list = mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .accept(ResponseFormats.APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(ResponseFormats.APPLICATION_SMILE))
+                .andReturn();
+        JsonNode notes = smile.readTree(list.getResponse().getContentAsByteArray());
+        assertEquals(1, notes.size());
+        assertEquals(note.get("id").asLong(), notes.get(0).get("id").asLong());
+        // Dates are ISO strings, as in JSON, not timestamps
+        assertTrue(notes.get(0).get("createdAt").asText().startsWith(note.get("createdAt").asText().substring(0, 19)));
+
+        MvcResult streamed = mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .param("stream", "true")
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult dispatched = mockMvc.perform(asyncDispatch(streamed))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+        assertEquals("Sent as CBOR",
+                cbor.readTree(dispatched.getResponse().getContentAsByteArray()).get(0).get("content").asText());
+
+        MvcResult tags = mockMvc.perform(get("/api/tags")
+                .header("Authorization", "Bearer " + testUserToken)
+                .accept(ResponseFormats.APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(ResponseFormats.APPLICATION_SMILE))
+                .andReturn();
+        assertEquals("work", smile.readTree(tags.getResponse().getContentAsByteArray()).get(0).get("name").asText());
+    }
+
+    @Test
+    public void test_079_cached_lists_are_kept_per_format() throws Exception {
+        createNote("Cached", "Content", List.of());
+
+        // The first request caches the JSON list; the next one must not be served those bytes
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].title").value("Cached"));
+        MvcResult cbor = mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+        assertEquals("Cached", responseFormats.mapper(MediaType.APPLICATION_CBOR)
+                .readTree(cbor.getResponse().getContentAsByteArray()).get(0).get("title").asText());
+
+        // A write drops the list in every format
+        createNote("Second", "Content", List.of());
+        MvcResult after = mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .accept(MediaType.APPLICATION_CBOR))
+                .andReturn();
+        assertEquals(2, responseFormats.mapper(MediaType.APPLICATION_CBOR)
+                .readTree(after.getResponse().getContentAsByteArray()).size());
+
+        // Anything else the client accepts falls back to JSON
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken)
+                .accept(MediaType.TEXT_PLAIN, MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    // ==================== IDEMPOTENCY TESTS (80-82) ====================
+
+    @Test
+    public void test_080_retried_create_returns_the_first_note() throws Exception {
+        String payload = "{\"title\":\"Once\",\"content\":\"Created once\",\"tags\":[\"work\"]}";
+
+        MvcResult first = mockMvc.perform(post("/api/notes/create")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "create-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payload))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "false"))
+                .andReturn();
+        long noteId = objectMapper.readTree(first.getResponse().getContentAsString()).get("id").asLong();
+
+        mockMvc.perform(post("/api/notes/create")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "create-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payload))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.id").value(noteId))
+                .andExpect(jsonPath("$.title").value("Once"))
+                .andExpect(jsonPath("$.tags[0].name").value("work"));
+        assertEquals(1, noteRepository.count());
+
+        // The same key with another body is a client error, not a replay
+        mockMvc.perform(post("/api/notes/create")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "create-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Other\",\"content\":\"Different\"}"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.error").value(containsString("create-1")));
+
+        // A failed create keeps no result, so its retry runs again
+        mockMvc.perform(post("/api/notes/create")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "create-2")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"content\":\"No title\"}"))
+                .andExpect(status().isBadRequest());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM idempotency_keys WHERE idempotency_key = 'create-2'", Integer.class));
+
+        // Without a key every request creates a note, as before
+        mockMvc.perform(post("/api/notes/create")
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payload))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+        assertEquals(2, noteRepository.count());
+    }
+
+    @Test
+    public void test_081_concurrent_duplicates_create_one_note() throws Exception {
+        String payload = "{\"title\":\"Double click\",\"content\":\"Sent twice\"}";
+        int requests = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<MvcResult>> results = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                results.add(executor.submit(() -> {
+                    await(start);
+                    return mockMvc.perform(post("/api/notes/create")
+                            .header("Authorization", "Bearer " + testUserToken)
+                            .header("Idempotency-Key", "double-click")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(payload))
+                            .andReturn();
+                }));
+            }
+            start.countDown();
+
+            Set<Long> ids = new HashSet<>();
+            int replayed = 0;
+            for (Future<MvcResult> result : results) {
+                MvcResult response = result.get(10, TimeUnit.SECONDS);
+                assertEquals(200, response.getResponse().getStatus());
+                ids.add(objectMapper.readTree(response.getResponse().getContentAsString()).get("id").asLong());
+                if ("true".equals(response.getResponse().getHeader("Idempotent-Replayed"))) {
+                    replayed++;
+                }
+            }
+            assertEquals(1, ids.size());
+            assertEquals(requests - 1, replayed);
+            assertEquals(1, noteRepository.count());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // As seen from another instance while the first request still runs: retry later
+        jdbcTemplate.update("UPDATE idempotency_keys SET response_status = NULL WHERE idempotency_key = 'double-click'");
+        mockMvc.perform(post("/api/notes/create")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "double-click")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payload))
+                .andExpect(status().isConflict())
+                .andExpect(header().string("Retry-After", "1"));
+        assertEquals(1, noteRepository.count());
+
+        // A claim older than the lease was left by an instance that died; the retry takes it over
+        jdbcTemplate.update("UPDATE idempotency_keys SET created_at = ? WHERE idempotency_key = 'double-click'",
+                Timestamp.valueOf(LocalDateTime.now().minusHours(1)));
+        mockMvc.perform(post("/api/notes/create")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "double-click")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payload))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "false"));
+        assertEquals(2, noteRepository.count());
+    }
+
+    @Test
+    public void test_082_retried_import_is_not_imported_twice() throws Exception {
+        String ndjson = "{\"title\":\"One\",\"content\":\"A\"}\n{\"title\":\"Two\",\"content\":\"B\"}\n";
+
+        for (String replayed : List.of("false", "true")) {
+            mockMvc.perform(post("/api/notes/import")
+                    .header("Authorization", "Bearer " + testUserToken)
+                    .header("Idempotency-Key", "import-1")
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .content(ndjson))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Idempotent-Replayed", replayed))
+                    .andExpect(jsonPath("$.imported").value(2));
+        }
+        assertEquals(2, noteRepository.count());
+
+        // Keys expire after the TTL and are purged
+        jdbcTemplate.update("UPDATE idempotency_keys SET created_at = ? WHERE idempotency_key = 'import-1'",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(2)));
+        idempotencyStore.purge();
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM idempotency_keys WHERE idempotency_key = 'import-1'", Integer.class));
+    }
+
+    // ==================== EVENT ORDERING TESTS (83) ====================
+
+    @Test
+    public void test_083_changes_are_published_after_commit() throws Exception {
+        Long userId = testUser.getId();
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        List<String> seen = new CopyOnWriteArrayList<>();
+        // What another connection reads when the invalidation arrives, i.e. what a client refetching would get
+        invalidationBus.subscribe(invalidation -> {
+            if (invalidation.kind() == Invalidation.Kind.NOTES && userId.equals(invalidation.id())
+                    && invalidation.noteId() != null) {
+                try {
+                    seen.add(reader.submit(() -> jdbcTemplate.queryForList(
+                            "SELECT title FROM notes WHERE id = ?", String.class, invalidation.noteId())
+                            .stream().findFirst().orElse("missing")).get(5, TimeUnit.SECONDS));
+                } catch (Exception e) {
+                    seen.add("error: " + e.getMessage());
+                }
+            }
+        });
+        try {
+            long noteId = createNote("Created", "Content", List.of()).get("id").asLong();
+            mockMvc.perform(patch("/api/notes/" + noteId)
+                    .header("Authorization", "Bearer " + testUserToken)
+                    .header("If-Match", "\"0\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"title\":\"Patched\"}"))
+                    .andExpect(status().isOk());
+            // Rolled back: nothing is published
+            mockMvc.perform(patch("/api/notes/" + noteId)
+                    .header("Authorization", "Bearer " + testUserToken)
+                    .header("If-Match", "\"0\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"title\":\"Stale\"}"))
+                    .andExpect(status().isPreconditionFailed());
+
+            assertEquals(List.of("Created", "Patched"), seen);
+        } finally {
+            reader.shutdownNow();
+        }
+    }
+
+    // ==================== INTERRUPTED IMPORT TESTS (84-85) ====================
+
+    @Test
+    public void test_084_interrupted_import_keeps_its_partial_result() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 1; i <= 1500; i++) {
+            ndjson.append("{\"title\":\"Note ").append(i).append("\",\"content\":\"Body ").append(i * 7919).append("\"}\n");
+        }
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(ndjson.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        // Cut off near the end, as when the connection drops: the first batch is already committed by then
+        byte[] truncated = Arrays.copyOf(gzipped.toByteArray(), gzipped.size() * 9 / 10);
+
+        MvcResult first = mockMvc.perform(post("/api/notes/import")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "import-cut")
+                .header("Content-Encoding", "gzip")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(truncated))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "false"))
+                .andExpect(jsonPath("$.interrupted.error").value(containsString("Input ended unexpectedly")))
+                .andReturn();
+        JsonNode result = objectMapper.readTree(first.getResponse().getContentAsString());
+        long imported = result.get("imported").asLong();
+        assertTrue(imported >= 1000 && imported < 1500, "imported " + imported);
+        assertEquals(imported, result.get("interrupted").get("line").asLong());
+        assertEquals(imported, noteRepository.count());
+
+        // The retry gets the partial result instead of importing the committed batches again
+        mockMvc.perform(post("/api/notes/import")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "import-cut")
+                .header("Content-Encoding", "gzip")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(truncated))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.imported").value(imported))
+                .andExpect(jsonPath("$.interrupted.line").value(imported));
+        assertEquals(imported, noteRepository.count());
+
+        // Broken off before anything was committed: a plain failure, and the retry runs again
+        byte[] early = Arrays.copyOf(gzipped.toByteArray(), gzipped.size() / 10);
+        mockMvc.perform(post("/api/notes/import")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "import-early")
+                .header("Content-Encoding", "gzip")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(early))
+                .andExpect(status().isBadRequest());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM idempotency_keys WHERE idempotency_key = 'import-early'", Integer.class));
+        assertEquals(imported, noteRepository.count());
+    }
+
+    @Test
+    public void test_085_retried_import_is_recognized_by_its_body() throws Exception {
+        String ndjson = "{\"title\":\"One\",\"content\":\"A\"}\n";
+        mockMvc.perform(post("/api/notes/import")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "import-body")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1));
+
+        // Same type and length, another body
+        mockMvc.perform(post("/api/notes/import")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "import-body")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(ndjson.replace("One", "Two")))
+                .andExpect(status().isUnprocessableEntity());
+
+        // The first body with more after it
+        mockMvc.perform(post("/api/notes/import")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "import-body")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(ndjson + ndjson))
+                .andExpect(status().isUnprocessableEntity());
+
+        mockMvc.perform(post("/api/notes/import")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "import-body")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"));
+        assertEquals(1, noteRepository.count());
+    }
+
+    // ==================== IMPORT SIZE LIMIT TESTS (86-87) ====================
+
+    @Test
+    public void test_086_oversized_ndjson_line_is_reported_as_failed() throws Exception {
+        // Over the 64KB test limit (notes.import.max-line-size)
+        String big = "x".repeat(70 * 1024);
+        String ndjson = "{\"title\":\"Before\",\"content\":\"A\"}\r\n"
+                + "{\"title\":\"Big\",\"content\":\"" + big + "\"}\n"
+                + "{\"title\":\"After\",\"content\":\"" + big.substring(0, 60 * 1024) + "\"}";
+
+        mockMvc.perform(post("/api/notes/import")
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(2))
+                .andExpect(jsonPath("$.errors[0].error").value(containsString("65536 bytes")));
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$[*].title", containsInAnyOrder("Before", "After")));
+    }
+
+    @Test
+    public void test_087_oversized_zip_entry_is_reported_as_failed() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("huge.md"));
+            zip.write(("# Huge\n\n" + "x".repeat(70 * 1024)).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("small.md"));
+            zip.write("# Small\n\nFits".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+
+        mockMvc.perform(post("/api/notes/import")
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType("application/zip")
+                .content(bytes.toByteArray()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.errors[0].entry").value("huge.md"))
+                .andExpect(jsonPath("$.errors[0].error").value(containsString("65536 bytes")));
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$[*].title", contains("Small")));
+    }
+
+    // ==================== STREAM QUERY TESTS (88) ====================
+
+    @Test
+    public void test_088_streamed_notes_read_tags_and_bodies_per_batch() throws Exception {
+        String large = "y".repeat(10_000);
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            ndjson.append("{\"title\":\"Note ").append(i).append("\",\"content\":\"")
+                    .append(i % 3 == 0 ? large : "Short " + i).append("\",\"tags\":[\"t").append(i % 4).append("\"]}\n");
+        }
+        mockMvc.perform(post("/api/notes/import")
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(ndjson.toString()))
+                .andExpect(jsonPath("$.imported").value(30));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        MvcResult result = mockMvc.perform(get("/api/notes/export")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Notes, their tags and their bodies: a query each, not one per note
+        assertTrue(statistics.getPrepareStatementCount() < 10, statistics.getPrepareStatementCount() + " statements");
+        String[] lines = body.split("\n");
+        assertEquals(30, lines.length);
+        for (int i = 0; i < 30; i++) {
+            JsonNode note = objectMapper.readTree(lines[i]);
+            assertEquals(i % 3 == 0 ? large : "Short " + i, note.get("content").asText());
+            assertEquals("t" + (i % 4), note.get("tags").get(0).asText());
+        }
+
+        statistics.clear();
+        result = mockMvc.perform(get("/api/notes/active")
+                .param("stream", "true")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(30)))
+                .andExpect(jsonPath("$[0].contentTruncated").value(true))
+                .andExpect(jsonPath("$[29].tags[0].name").value("t1"));
+        assertTrue(statistics.getPrepareStatementCount() < 10, statistics.getPrepareStatementCount() + " statements");
+    }
+
+    // ==================== IMPORT VALIDATION TESTS (89) ====================
+
+    @Test
+    public void test_089_overlong_title_or_tag_rejects_only_its_line() throws Exception {
+        String longText = "t".repeat(256);
+        String ndjson = "{\"title\":\"First\",\"content\":\"A\"}\n"
+                + "{\"title\":\"" + longText + "\",\"content\":\"B\"}\n"
+                + "{\"title\":\"Second\",\"content\":\"C\",\"tags\":[\"" + longText + "\"]}\n"
+                + "{\"title\":\"Third\",\"content\":\"D\",\"tags\":[\"kept\"]}";
+
+        mockMvc.perform(post("/api/notes/import")
+                .header("Authorization", "Bearer " + testUserToken)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.errors[0].line").value(2))
+                .andExpect(jsonPath("$.errors[0].error").value("Title exceeds 255 characters"))
+                .andExpect(jsonPath("$.errors[1].line").value(3))
+                .andExpect(jsonPath("$.errors[1].error").value("Tag name exceeds 255 characters"));
+
+        mockMvc.perform(get("/api/notes/active")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(jsonPath("$[*].title", containsInAnyOrder("First", "Third")));
+    }
+
+    // ==================== IDEMPOTENCY LEASE TESTS (90-91) ====================
+
+    @Test
+    public void test_090_create_is_not_committed_without_its_stored_response() throws Exception {
+        String payload = "{\"title\":\"Atomic\",\"content\":\"Once\"}";
+        Mockito.doThrow(new DataAccessResourceFailureException("Connection lost"))
+                .when(jdbcTemplate).update(ArgumentMatchers.startsWith("UPDATE idempotency_keys SET response_status"),
+                        ArgumentMatchers.any(Object[].class));
+
+        mockMvc.perform(post("/api/notes/create")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "atomic-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payload))
+                .andExpect(status().isBadRequest());
+        Mockito.reset(jdbcTemplate);
+        assertEquals(0, noteRepository.count());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM idempotency_keys WHERE idempotency_key = 'atomic-1'", Integer.class));
+
+        // Nothing was written, so the retry creates the note, once
+        for (String replayed : List.of("false", "true")) {
+            mockMvc.perform(post("/api/notes/create")
+                    .header("Authorization", "Bearer " + testUserToken)
+                    .header("Idempotency-Key", "atomic-1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(payload))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Idempotent-Replayed", replayed));
+        }
+        assertEquals(1, noteRepository.count());
+    }
+
+    @Test
+    public void test_091_renewed_claim_is_not_taken_over() throws Exception {
+        String payload = "{\"title\":\"Long running\",\"content\":\"Still going\"}";
+        mockMvc.perform(post("/api/notes/create")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "renewed-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payload))
+                .andExpect(status().isOk());
+
+        // Claimed long ago by a request that is still running and renewing its lease
+        jdbcTemplate.update("UPDATE idempotency_keys SET response_status = NULL, created_at = ?, renewed_at = ? "
+                        + "WHERE idempotency_key = 'renewed-1'",
+                Timestamp.valueOf(LocalDateTime.now().minusHours(1)), Timestamp.valueOf(LocalDateTime.now()));
+        mockMvc.perform(post("/api/notes/create")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "renewed-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payload))
+                .andExpect(status().isConflict());
+        assertEquals(1, noteRepository.count());
+
+        // Once the renewals stop for longer than the lease, the request is abandoned and the retry runs
+        jdbcTemplate.update("UPDATE idempotency_keys SET renewed_at = ? WHERE idempotency_key = 'renewed-1'",
+                Timestamp.valueOf(LocalDateTime.now().minusHours(1)));
+        mockMvc.perform(post("/api/notes/create")
+                .header("Authorization", "Bearer " + testUserToken)
+                .header("Idempotency-Key", "renewed-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payload))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "false"));
+        assertEquals(2, noteRepository.count());
+    }
+
+    // ==================== STREAM TIMEOUT TESTS (92) ====================
+
+    @Test
+    public void test_092_streamed_lists_and_export_have_no_async_timeout() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/notes/active")
+                .param("stream", "true")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // Not spring.mvc.async.request-timeout, which would cut a large list off mid-body
+        assertEquals(-1, result.getRequest().getAsyncContext().getTimeout());
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        result = mockMvc.perform(get("/api/notes/export")
+                .header("Authorization", "Bearer " + testUserToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(-1, result.getRequest().getAsyncContext().getTimeout());
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+    }
+
+    // ==================== CONCURRENT REVISION TESTS (93) ====================
+
+    @Test
+    public void test_093_concurrent_updates_number_revisions_without_clashing() throws Exception {
+        long noteId = createNote("Draft", "Start", List.of()).get("id").asLong();
+        int requests = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<MvcResult>> results = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                String content = "Writer " + i;
+                results.add(executor.submit(() -> {
+                    await(start);
+                    return mockMvc.perform(put("/api/notes/" + noteId)
+                            .header("Authorization", "Bearer " + testUserToken)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"title\":\"Draft\",\"content\":\"" + content + "\",\"tags\":[]}"))
+                            .andReturn();
+                }));
+            }
+            start.countDown();
+
+            // Each write either lands with the next revision number or is a 409, never a revision key clash
+            int saved = 0;
+            for (Future<MvcResult> result : results) {
+                int status = result.get(10, TimeUnit.SECONDS).getResponse().getStatus();
+                assertTrue(status == 200 || status == 409, "status " + status);
+                if (status == 200) {
+                    saved++;
+                }
+            }
+            mockMvc.perform(get("/api/notes/" + noteId + "/revisions")
+                    .header("Authorization", "Bearer " + testUserToken))
+                    .andExpect(jsonPath("$", hasSize(1 + saved)))
+                    .andExpect(jsonPath("$[0].revision").value(1 + saved));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
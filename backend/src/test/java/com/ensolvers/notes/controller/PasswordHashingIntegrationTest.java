@@ -0,0 +1,145 @@
+package com.ensolvers.notes.controller;
+
+import com.ensolvers.notes.repository.NoteRepository;
+import com.ensolvers.notes.repository.TagRepository;
+import com.ensolvers.notes.repository.UserRepository;
+import com.ensolvers.notes.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Saturates a password hashing pool of one thread and one queue slot by holding logins
+ * inside BCrypt until the test lets them go.
+ */
+@SpringBootTest(properties = {
+        "notes.auth.hashing.pool-size=1",
+        "notes.auth.hashing.queue-capacity=1",
+        "notes.auth.hashing.max-wait=1s",
+        "notes.auth.hashing.retry-after=3s"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class PasswordHashingIntegrationTest {
+
+    private static final String LOGIN = "{\"username\":\"hasher\",\"password\":\"password123\"}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @SpyBean
+    private BCryptPasswordEncoder passwordEncoder;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final Semaphore hashing = new Semaphore(0);
+    private ExecutorService clients;
+
+    @BeforeEach
+    public void setup() {
+        noteRepository.deleteAll();
+        tagRepository.deleteAll();
+        userRepository.deleteAll();
+        userService.registerUser("hasher", "password123");
+
+        doAnswer(invocation -> {
+            hashing.release();
+            release.await(10, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(passwordEncoder).matches(any(), any());
+        clients = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        release.countDown();
+        clients.shutdownNow();
+    }
+
+    private Future<MvcResult> loginInBackground() {
+        return clients.submit(() -> mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(LOGIN))
+                .andReturn());
+    }
+
+    private double rejected() {
+        return meterRegistry.get("auth.password.hashing.rejected").counter().count();
+    }
+
+    private double queueDepth() {
+        return meterRegistry.get("auth.password.hashing.queue.depth").gauge().value();
+    }
+
+    @Test
+    public void test_001_login_is_rejected_with_503_when_the_queue_is_full() throws Exception {
+        Future<MvcResult> running = loginInBackground();
+        assertTrue(hashing.tryAcquire(5, TimeUnit.SECONDS));
+        Future<MvcResult> queued = loginInBackground();
+        for (int i = 0; i < 100 && queueDepth() < 1; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, queueDepth());
+        double rejected = rejected();
+
+        mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(LOGIN))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.message").value("Too many authentication requests"));
+        assertEquals(rejected + 1, rejected());
+
+        // The admitted logins finish once BCrypt gets going again
+        release.countDown();
+        assertEquals(200, running.get(5, TimeUnit.SECONDS).getResponse().getStatus());
+        assertEquals(200, queued.get(5, TimeUnit.SECONDS).getResponse().getStatus());
+    }
+
+    @Test
+    public void test_002_login_waiting_longer_than_max_wait_is_rejected_with_503() throws Exception {
+        Future<MvcResult> running = loginInBackground();
+        assertTrue(hashing.tryAcquire(5, TimeUnit.SECONDS));
+
+        mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(LOGIN))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "3"));
+
+        // The stuck one gives up after max-wait as well
+        assertEquals(503, running.get(5, TimeUnit.SECONDS).getResponse().getStatus());
+    }
+}
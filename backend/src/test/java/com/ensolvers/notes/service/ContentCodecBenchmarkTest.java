@@ -0,0 +1,133 @@
+package com.ensolvers.notes.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures storage savings and compress/decompress cost of external note bodies on a
+ * generated corpus of Markdown-like notes between 8 KB and 256 KB.
+ * Run with: mvn test -Pbenchmark -Dtest=ContentCodecBenchmarkTest
+ */
+@Tag("benchmark")
+public class ContentCodecBenchmarkTest {
+
+    private static final int NOTES = 2_000;
+    private static final int ROUNDS = 5;
+
+    private static final String[] WORDS = (
+            "the of and to in is that for it as with was on be by this are from at or an have not "
+            + "meeting project notes review deadline client release backend frontend database query index "
+            + "deploy server cache latency request response user account invoice budget roadmap sprint "
+            + "design draft summary action item follow up decision owner status blocked done pending "
+            + "performance migration schema backup incident report customer feedback priority estimate"
+    ).split(" ");
+
+    @Test
+    public void benchmark_compression_of_large_notes() {
+        List<String> corpus = generateCorpus(new Random(42));
+
+        long rawBytes = 0;
+        long storedBytes = 0;
+        List<byte[]> compressed = new ArrayList<>(corpus.size());
+        for (String text : corpus) {
+            byte[] data = ContentCodec.compress(text);
+            rawBytes += text.getBytes(StandardCharsets.UTF_8).length;
+            storedBytes += data.length;
+            compressed.add(data);
+        }
+
+        // Warm up the JIT before timing
+        runCompress(corpus);
+        runDecompress(corpus, compressed);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            runCompress(corpus);
+        }
+        long compressNanos = (System.nanoTime() - start) / ROUNDS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            runDecompress(corpus, compressed);
+        }
+        long decompressNanos = (System.nanoTime() - start) / ROUNDS;
+
+        double rawMb = rawBytes / 1e6;
+        System.out.printf("ContentCodec: %d notes, %.1f MB raw, %.1f MB stored (ratio %.2f, %.0f%% saved)%n",
+                corpus.size(), rawMb, storedBytes / 1e6, (double) rawBytes / storedBytes,
+                100.0 * (rawBytes - storedBytes) / rawBytes);
+        System.out.printf("ContentCodec: write %.0f MB/s (%.1f us/note), read %.0f MB/s (%.1f us/note)%n",
+                rawMb / (compressNanos / 1e9), compressNanos / 1e3 / corpus.size(),
+                rawMb / (decompressNanos / 1e9), decompressNanos / 1e3 / corpus.size());
+
+        assertTrue(storedBytes < rawBytes);
+    }
+
+    private static void runCompress(List<String> corpus) {
+        for (String text : corpus) {
+            ContentCodec.compress(text);
+        }
+    }
+
+    private static void runDecompress(List<String> corpus, List<byte[]> compressed) {
+        for (int i = 0; i < corpus.size(); i++) {
+            String text = corpus.get(i);
+            String decoded = ContentCodec.decompress(ContentCodec.DEFLATE, compressed.get(i),
+                    text.getBytes(StandardCharsets.UTF_8).length);
+            if (decoded.length() != text.length()) {
+                fail("Round trip changed note " + i);
+            }
+        }
+    }
+
+    // Headings, paragraphs, bullet lists and the odd code block, sized log-uniformly
+    private static List<String> generateCorpus(Random random) {
+        List<String> corpus = new ArrayList<>(NOTES);
+        for (int n = 0; n < NOTES; n++) {
+            int target = (int) (8_192 * Math.pow(32, random.nextDouble()));
+            StringBuilder text = new StringBuilder(target + 256);
+            while (text.length() < target) {
+                switch (random.nextInt(6)) {
+                    case 0 -> text.append("## ").append(sentence(random, 4)).append("\n\n");
+                    case 1 -> {
+                        for (int i = 0; i < 3 + random.nextInt(5); i++) {
+                            text.append("- ").append(sentence(random, 6 + random.nextInt(8))).append('\n');
+                        }
+                        text.append('\n');
+                    }
+                    case 2 -> text.append("```\nSELECT id, title FROM notes WHERE user_id = ")
+                            .append(random.nextInt(100_000)).append(" ORDER BY id;\n```\n\n");
+                    default -> {
+                        for (int i = 0; i < 3 + random.nextInt(6); i++) {
+                            text.append(sentence(random, 8 + random.nextInt(16))).append(' ');
+                        }
+                        text.append("\n\n");
+                    }
+                }
+            }
+            corpus.add(text.toString());
+        }
+        return corpus;
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (i == 0) {
+                word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+            } else {
+                sentence.append(' ');
+            }
+            sentence.append(word);
+        }
+        return sentence.append('.').toString();
+    }
+}
@@ -98,7 +98,7 @@ function ArchivedPage() {
                   <span className="archived-badge">Archived</span>
                 </div>
               </header>
-              <p className="note-content">{note.content}</p>
+              <p className="note-content">{note.content}{note.contentTruncated && "…"}</p>
               <footer className="note-actions">
                 <button onClick={() => unarchive(note.id)} className="btn-secondary">
                   ↩️ Restore
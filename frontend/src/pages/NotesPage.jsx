@@ -159,7 +159,17 @@ function NotesPage() {
     }
   };
 
-  const startEdit = (note) => {
+  const startEdit = async (note) => {
+    // Las notas largas llegan recortadas en la lista; pedir el contenido completo
+    if (note.contentTruncated) {
+      try {
+        const res = await api.get(`/notes/${note.id}`);
+        note = res.data;
+      } catch (err) {
+        setError(err.response?.data?.error || err.message || "Failed to load note");
+        return;
+      }
+    }
     setEditingNote(note.id);
     setEditTitle(note.title);
     setEditContent(note.content);
@@ -389,7 +399,7 @@ function NotesPage() {
                   {new Date(note.createdAt).toLocaleDateString()}
                 </span>
               </header>
-              <p className="note-content">{note.content}</p>
+              <p className="note-content">{note.content}{note.contentTruncated && "…"}</p>
               {note.tags && note.tags.length > 0 && (
                 <div className="note-tags">
                   {note.tags.map(tag => (